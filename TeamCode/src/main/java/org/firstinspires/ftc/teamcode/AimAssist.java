@@ -0,0 +1,208 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.Range;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+/**
+ * Driver assist: turns the robot to keep an AprilTag centered (tx = 0) while the driver keeps
+ * the translation. Only the turn command comes from here.
+ *
+ * A new tx arrives once per camera frame, tens of ms late; the loop runs faster than that. So
+ * each frame is pinned to where the robot was when it was captured (heading and position looked
+ * up in a short history), and every loop the tag's bearing is predicted from how far the robot
+ * has turned and moved since - the same idea as TagReacquirer. The PID runs on that prediction
+ * every loop, with the gyro rate as the D term, so the turn command is smooth between frames
+ * instead of stepping at the camera rate. The next frame corrects whatever the prediction missed.
+ *
+ * Call update() every loop, aiming or not, so the history is there when aiming starts.
+ */
+public class AimAssist {
+    private static final double LOST_SEC = 0.5;          // no frame for this long: let go
+    private static final double ON_TARGET_DEG = 1.5;
+    private static final int HISTORY = 64;               // loops of heading/position kept for latency compensation (~1.5 s)
+    private static final double INCHES_PER_METER = 39.3701;
+
+    private static final Tuning.Param TAG_ID = Tuning.define("aim.tagId", 0, 0, 586);       // 0 = tag 20 or 24, whichever is in view
+    private static final Tuning.Param KP = Tuning.define("aim.kP", 0.025, 0, 0.2);          // turn power per degree of tx
+    private static final Tuning.Param KI = Tuning.define("aim.kI", 0.01, 0, 0.2);           // per degree-second
+    private static final Tuning.Param KD = Tuning.define("aim.kD", 0.0015, 0, 0.02);        // per deg/s of turn
+    private static final Tuning.Param MAX_TURN = Tuning.define("aim.maxTurn", 0.6, 0, 1);
+    private static final double MAX_INTEGRAL = 20.0;     // degree-seconds
+
+    private final RobotClock clock;
+
+    // Ring of recent robot state, oldest overwritten
+    private final long[] historyNanos = new long[HISTORY];
+    private final double[] historyHeading = new double[HISTORY];
+    private final double[] historyX = new double[HISTORY];
+    private final double[] historyY = new double[HISTORY];
+    private final double[] lookup = new double[3];       // heading, x, y at a past time
+    private int historyNext = 0, historyCount = 0;
+
+    // Last frame used
+    private int targetId = -1;
+    private long frameNanos = 0L;        // capture time
+    private long frameSeenNanos = 0L;    // when update() got it
+    private double frameBearing = 0.0;
+    private boolean frameHasHeading = false, frameHasPosition = false;
+    private double tagDirection = 0.0;   // field direction to the tag from the robot at capture, deg
+    private double tagX = 0.0, tagY = 0.0;
+
+    private boolean tracking = false;
+    private double bearing = 0.0;        // predicted tx now
+    private double integral = 0.0;
+    private double turn = 0.0;
+    private long lastNanos = 0L;
+
+    public AimAssist(RobotClock clock) {
+        this.clock = clock;
+    }
+
+    public AimAssist() {
+        this(RobotClock.SYSTEM);
+    }
+
+    /**
+     * @param vision detections from this loop's TagVision.update(); may be null
+     * @param active aiming wanted (trigger held)
+     * @param headingDeg field heading, CCW positive, or NaN if unknown (then tx is used as last seen)
+     * @param rateDps turn rate, CCW positive (0 if unknown)
+     * @param fieldX robot field position in inches, or NaN if unknown (then only turning is predicted)
+     * @return turn power, CCW positive, or NaN when not aiming (no tag, or not active)
+     */
+    public double update(TagVision vision, boolean active, double headingDeg, double rateDps, double fieldX, double fieldY) {
+        long now = clock.nanoTime();
+        double dt = (lastNanos == 0L) ? 0.0 : Math.min(0.1, (now - lastNanos) / 1.0e9);
+        lastNanos = now;
+        boolean haveHeading = !Double.isNaN(headingDeg);
+        boolean havePosition = haveHeading && !Double.isNaN(fieldX) && !Double.isNaN(fieldY);
+        if (haveHeading) record(now, headingDeg, havePosition ? fieldX : Double.NaN, havePosition ? fieldY : Double.NaN);
+
+        if (!active) {
+            reset();
+            return Double.NaN;
+        }
+
+        TagDetection tag = pick(vision);
+        if (tag != null && tag.timestampNanos != frameNanos) onFrame(tag, now);
+        tracking = frameSeenNanos != 0L && (now - frameSeenNanos) / 1.0e9 <= LOST_SEC;
+        if (!tracking) {
+            integral = 0.0;
+            turn = 0.0;
+            return Double.NaN;
+        }
+
+        // Predicted tx: turning CCW swings the tag right (tx up) by the same angle; driving changes its direction
+        if (frameHasPosition && havePosition) {
+            double directionNow = Math.toDegrees(Math.atan2(tagY - fieldY, tagX - fieldX));
+            bearing = AngleUnit.normalizeDegrees(headingDeg - directionNow);
+        } else if (frameHasHeading && haveHeading) {
+            bearing = AngleUnit.normalizeDegrees(headingDeg - tagDirection);
+        } else {
+            bearing = frameBearing;
+        }
+
+        Tuning.Snapshot tuning = Tuning.current();
+        double maxTurn = tuning.get(MAX_TURN);
+        double out = tuning.get(KP) * bearing + tuning.get(KI) * integral + tuning.get(KD) * rateDps;
+        // Integrate only while the output isn't pinned
+        if (Math.abs(out) < maxTurn) integral = Range.clip(integral + bearing * dt, -MAX_INTEGRAL, MAX_INTEGRAL);
+        turn = -Range.clip(out, -maxTurn, maxTurn);
+        return turn;
+    }
+
+    private void onFrame(TagDetection tag, long now) {
+        if (tag.id != targetId) integral = 0.0;
+        targetId = tag.id;
+        frameNanos = tag.timestampNanos;
+        frameSeenNanos = now;
+        frameBearing = tag.bearingDeg;
+
+        frameHasHeading = stateAt(frameNanos, lookup);
+        frameHasPosition = false;
+        if (!frameHasHeading) return;
+        tagDirection = lookup[0] - frameBearing;
+        if (tag.hasPose && !Double.isNaN(lookup[1])) {
+            double rangeIn = Math.hypot(tag.x, tag.z) * INCHES_PER_METER;
+            double d = Math.toRadians(tagDirection);
+            tagX = lookup[1] + rangeIn * Math.cos(d);
+            tagY = lookup[2] + rangeIn * Math.sin(d);
+            frameHasPosition = true;
+        }
+    }
+
+    // The configured tag, or (if none is configured) the one we're on, else 20, else 24
+    private TagDetection pick(TagVision vision) {
+        if (vision == null) return null;
+        int configured = (int) Math.round(Tuning.current().get(TAG_ID));
+        if (configured > 0) return vision.find(configured);
+        TagDetection tag = (targetId > 0) ? vision.find(targetId) : null;
+        if (tag == null) tag = vision.find(20);
+        if (tag == null) tag = vision.find(24);
+        return tag;
+    }
+
+    private void record(long nanos, double heading, double x, double y) {
+        historyNanos[historyNext] = nanos;
+        historyHeading[historyNext] = heading;
+        historyX[historyNext] = x;
+        historyY[historyNext] = y;
+        historyNext = (historyNext + 1) % HISTORY;
+        historyCount = Math.min(historyCount + 1, HISTORY);
+    }
+
+    // Robot state at a past time, interpolated; before the history starts, the oldest there is
+    private boolean stateAt(long nanos, double[] out) {
+        if (historyCount == 0) return false;
+        int newer = -1;
+        for (int n = 0; n < historyCount; n++) {
+            int i = Math.floorMod(historyNext - 1 - n, HISTORY);
+            if (historyNanos[i] <= nanos) {
+                if (newer < 0) {
+                    copyState(i, out);
+                } else {
+                    double f = (double) (nanos - historyNanos[i]) / (historyNanos[newer] - historyNanos[i]);
+                    out[0] = historyHeading[i] + f * AngleUnit.normalizeDegrees(historyHeading[newer] - historyHeading[i]);
+                    out[1] = historyX[i] + f * (historyX[newer] - historyX[i]);
+                    out[2] = historyY[i] + f * (historyY[newer] - historyY[i]);
+                }
+                return true;
+            }
+            newer = i;
+        }
+        copyState(newer, out);
+        return true;
+    }
+
+    private void copyState(int i, double[] out) {
+        out[0] = historyHeading[i];
+        out[1] = historyX[i];
+        out[2] = historyY[i];
+    }
+
+    // Let go of the target; the next press picks again
+    public void reset() {
+        tracking = false;
+        targetId = -1;
+        frameNanos = 0L;
+        frameSeenNanos = 0L;
+        integral = 0.0;
+        turn = 0.0;
+    }
+
+    public boolean isTracking() { return tracking; }
+    public boolean isOnTarget() { return tracking && Math.abs(bearing) < ON_TARGET_DEG; }
+    public int getTargetId() { return targetId; }
+    public double getPredictedBearing() { return bearing; }
+
+    public void report(Telemetry telemetry) {
+        if (!tracking) {
+            telemetry.addData("Aim", "no tag%s", targetId > 0 ? " (lost " + targetId + ")" : "");
+            return;
+        }
+        telemetry.addData("Aim", "tag %d, tx %.1f (frame %.0f ms old, %s)%s, turn %.2f", targetId, bearing,
+                (clock.nanoTime() - frameNanos) / 1.0e6, frameHasPosition ? "turn+drive" : frameHasHeading ? "turn" : "no prediction",
+                isOnTarget() ? " ON TARGET" : "", turn);
+    }
+}
@@ -3,52 +3,70 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
-import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
-import com.qualcomm.hardware.limelightvision.Limelight3A;
-import com.qualcomm.hardware.limelightvision.LLResult;
-import com.qualcomm.hardware.limelightvision.LLResultTypes;
 import com.qualcomm.robotcore.hardware.IMU;
-import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
-import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
-import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
-import java.util.List;
 
 /**
- * TeleOp: AprilTag Challenge - performs different sequences for tags 21, 22, 23.
+ * TeleOp: AprilTag Challenge - performs a different sequence for each tag (21, 22, 23 by default).
+ * Sequences come from FIRST/data/routines.txt if it exists (see Routines), so they can be changed without a rebuild.
  * All actions are smooth and controlled, with resets if tag is lost for >20s.
  */
 @TeleOp(name="AprilTag Challenge", group="TeleOp")
 public class AprilTagChallenge extends LinearOpMode {
     // Hardware
     private DcMotor frontLeft, frontRight, backLeft, backRight;
-    private Limelight3A limelight;
+    private TagVision vision;
     private IMU imu;
-    private boolean imuAvailable = false;
-    private ElapsedTime runtime = new ElapsedTime();
+    private HeadingTracker headingTracker;
+    private Routines routines;
+    private final TagFilter tagFilter = new TagFilter();   // drops outlier tag measurements before centerOnTag
+    private TagReacquirer reacquirer;                      // turns back toward the tag when a center step loses it
+    private LoopWatchdog watchdog;
+    private final LoopStream.Sample streamSample = new LoopStream.Sample(); // every loop to the web viewer
+    private volatile boolean imuAvailable = false;      // set by the IMU's init thread once it is usable
+    private RobotClock clock = RobotClock.SYSTEM;      // all timing and waiting goes through this
+    private RobotClock.Timer runtime;
     private double accumulatedHeading = 0.0; // Fallback heading when IMU unavailable
 
-    // Tag IDs
-    private static final int TAG_21 = 21;
-    private static final int TAG_22 = 22;
-    private static final int TAG_23 = 23;
-
-    // Motion parameters
-    private static final double TURN_GAIN = 0.025;
-    private static final double MAX_TURN_SPEED = 0.35;
-    private static final double MIN_TURN_POWER = 0.12;
-    private static final double CENTER_TOLERANCE_DEG = 2.0;
-    private static final double DRIVE_GAIN = 0.18; // Proportional gain for distance
-    private static final double MAX_DRIVE_SPEED = 0.28;
-    private static final double MIN_DRIVE_POWER = 0.12;
+    // Motion parameters (live-tunable at http://192.168.43.1:8080/tuning; read through the tuning snapshot)
+    private static final Tuning.Param TURN_GAIN = Tuning.define("challenge.turnGain", 0.025, 0, 0.2);
+    private static final Tuning.Param MAX_TURN_SPEED = Tuning.define("challenge.maxTurnSpeed", 0.35, 0, 1);
+    private static final Tuning.Param MIN_TURN_POWER = Tuning.define("challenge.minTurnPower", 0.12, 0, 0.5);
+    private static final Tuning.Param CENTER_TOLERANCE_DEG = Tuning.define("challenge.centerToleranceDeg", 2.0, 0.1, 10);
+    private static final Tuning.Param DRIVE_GAIN = Tuning.define("challenge.driveGain", 0.18, 0, 2); // Proportional gain for distance
+    private static final Tuning.Param MAX_DRIVE_SPEED = Tuning.define("challenge.maxDriveSpeed", 0.28, 0, 1);
+    private static final Tuning.Param MIN_DRIVE_POWER = Tuning.define("challenge.minDrivePower", 0.12, 0, 0.5);
     private static final double MAX_TURN_SLEW_PER_SEC = 2.0;
     private static final double MAX_DRIVE_SLEW_PER_SEC = 2.0;
 
-    // Target distances (inches)
+    // Spin parameters (continuous heading, so 360 degree turns are fine)
+    private static final Tuning.Param SPIN_GAIN = Tuning.define("challenge.spinGain", 0.012, 0, 0.1);             // power per degree of error
+    private static final Tuning.Param SPIN_RATE_GAIN = Tuning.define("challenge.spinRateGain", 0.0015, 0, 0.02); // power per deg/s, damps overshoot
+    private static final Tuning.Param SPIN_TOLERANCE_DEG = Tuning.define("challenge.spinToleranceDeg", 1.5, 0.1, 10);
+    private static final Tuning.Param SPIN_SETTLE_RATE_DPS = Tuning.define("challenge.spinSettleRateDps", 15.0, 1, 90); // must be nearly stopped to finish
+    // 0 = open-loop powers, 1 = hub velocity PIDF, 2 = TeamCode velocity loop (read at init)
+    private static final Tuning.Param DRIVE_MODE = Tuning.define("challenge.driveMode", 0, 0, 2);
+    private Tuning.Snapshot tuning = Tuning.current(); // refreshed at the top of every loop
+    private VoltageCompensator voltage;                // powers above are at nominal battery voltage
+    private DriveHealth health;                        // stall and current protection
+    private VelocityDrive velocityDrive;               // null when driving open loop
+    private final MecanumKinematics kinematics = new MecanumKinematics(VelocityDrive.TRACK_WIDTH_IN, VelocityDrive.WHEEL_BASE_IN);
+    private final double[] wheelSpeeds = new double[4];     // FL, FR, BL, BR
+    private final double[] wheelDistances = new double[4];  // inches, from the encoders
+    private static final Tuning.Param WHEEL_KS = Tuning.define("challenge.wheelKs", 0.0, 0, 0.3); // open-loop stiction feedforward; MIN_* powers already cover it
+    private static final Tuning.Param MOVE_GAIN = Tuning.define("challenge.moveGain", 0.05, 0, 0.5); // power per inch left to go
+    private static final double MOVE_TOLERANCE_IN = 0.5;
+    private static final double MOVE_TIMEOUT_BASE_SEC = 1.5;  // plus twice the time it should take
+
     private static final double INCHES_PER_METER = 39.3701;
-    private static final double TAG21_DIST = 36.0; // 3 feet
-    private static final double TAG22_DIST = 36.0; // 3 feet
-    private static final double TAG23_DIST = 48.0; // 4 feet
+
+    // Init time limits (ms); the IMU is optional, so START doesn't wait for it
+    private static final long MOTOR_INIT_TIMEOUT_MS = 500;
+    private static final long IMU_INIT_TIMEOUT_MS = 1000;
+    private static final long VISION_INIT_TIMEOUT_MS = 3000;
+
+    // Loop period we expect to hold, including the 20 ms sleep
+    private static final double LOOP_BUDGET_MS = 40.0;
 
     // Tag lost timeout
     private static final double TAG_LOST_TIMEOUT = 20.0; // seconds
@@ -58,217 +76,272 @@ public class AprilTagChallenge extends LinearOpMode {
     private long lastUpdateNanos = 0L;
 
     // State machine
-    private enum ChallengeState {
-        WAIT_FOR_TAG, CENTER_ON_TAG, PAUSE1, ACTION1, PAUSE2, ACTION2, PAUSE3, ACTION3, PAUSE4, ACTION4, COMPLETE, LOST
+    enum ChallengeState {
+        WAIT_FOR_TAG, RUN_ROUTINE, COMPLETE, LOST
+    }
+    private ChallengeState state = ChallengeState.WAIT_FOR_TAG;
+    private int currentTagId = -1;
+    private int lastTagId = -1;
+    private double lastTagSeenTime = 0;
+    private double stateStartTime = 0;
+    private double actionStartHeading = 0;
+    private double actionStartX = 0, actionStartY = 0;  // dead-reckoned position when the step started
+    private int pc = 0;          // current step of the running routine
+    private int routineEnd = 0;
+    private boolean hadTag = false;
+    private boolean lastCaptureButton = false;
+    private FrameRecorder recorder;                      // null without a webcam
+    private HardwareBootstrap boot;
+    private final StringBuilder routineProblems = new StringBuilder();
+
+    /**
+     * Run on a different clock, e.g. a VirtualClock to step through the state machine without waiting.
+     * Call before runOpMode() (or initChallenge()).
+     */
+    public void setClock(RobotClock clock) {
+        this.clock = clock;
     }
 
     @Override
     public void runOpMode() {
-        // Hardware init
-        frontLeft  = hardwareMap.get(DcMotor.class, "frontLeft");
-        frontRight = hardwareMap.get(DcMotor.class, "frontRight");
-        backLeft   = hardwareMap.get(DcMotor.class, "backLeft");
-        backRight  = hardwareMap.get(DcMotor.class, "backRight");
-        frontLeft.setDirection(DcMotor.Direction.REVERSE);
-        backLeft.setDirection(DcMotor.Direction.FORWARD);
-        frontRight.setDirection(DcMotor.Direction.FORWARD);
-        backRight.setDirection(DcMotor.Direction.FORWARD);
-        frontLeft.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        frontRight.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        backLeft.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        backRight.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-
-        // IMU init (BHI260AP on newer Control Hubs)
-        try {
-            imu = hardwareMap.get(IMU.class, "imu");
-            imu.resetYaw();
-            imuAvailable = true;
-            telemetry.addLine("IMU (BHI260AP) initialized successfully");
-        } catch (Exception e) {
-            imuAvailable = false;
-            telemetry.addLine("IMU not available - using fallback heading");
-            telemetry.addData("IMU Error", e.getMessage());
+        if (!initChallenge()) {
+            waitForStart();
+            return;
+        }
+        // Keep the init report current until START, so a late IMU shows up
+        while (!isStarted() && !isStopRequested()) {
+            reportInit();
+            clock.sleep(50);
+        }
+        waitForStart();
+        startChallenge();
+        while (opModeIsActive()) {
+            step();
+            clock.sleep(20);
         }
+        stopChallenge();
+    }
 
-        limelight = hardwareMap.get(Limelight3A.class, "limelight");
-        limelight.setPollRateHz(100);
-        limelight.pipelineSwitch(0);
-        limelight.start();
+    // runOpMode() in pieces, so the state machine can also be stepped off the robot (on a VirtualClock)
 
+    /**
+     * Hardware init - all devices at once. Motors and vision are needed; the IMU
+     * (BHI260AP on newer Control Hubs) can finish after START, or not at all (fallback heading).
+     * @return false if a critical device didn't initialize (reported on telemetry)
+     */
+    boolean initChallenge() {
+        boot = new HardwareBootstrap()
+                .add("frontLeft", true, MOTOR_INIT_TIMEOUT_MS, () -> frontLeft = initMotor("frontLeft", DcMotor.Direction.REVERSE))
+                .add("frontRight", true, MOTOR_INIT_TIMEOUT_MS, () -> frontRight = initMotor("frontRight", DcMotor.Direction.FORWARD))
+                .add("backLeft", true, MOTOR_INIT_TIMEOUT_MS, () -> backLeft = initMotor("backLeft", DcMotor.Direction.FORWARD))
+                .add("backRight", true, MOTOR_INIT_TIMEOUT_MS, () -> backRight = initMotor("backRight", DcMotor.Direction.FORWARD))
+                .add("vision", true, VISION_INIT_TIMEOUT_MS, () -> {
+                    // Limelight plus webcam (if configured) - either one alone is enough
+                    TagVision v = new TagVision(hardwareMap, clock);
+                    v.start();
+                    vision = v;
+                })
+                .add("imu", false, IMU_INIT_TIMEOUT_MS, () -> {
+                    imu = hardwareMap.get(IMU.class, "imu");
+                    headingTracker = new HeadingTracker(imu, clock);
+                    headingTracker.reset();
+                    imuAvailable = true;
+                });
+        boot.start();
+        boolean hardwareOk = boot.awaitCritical();
+        if (!hardwareOk) {
+            boot.report(telemetry);
+            telemetry.addLine("Drive motors or vision did not initialize - check the configuration");
+            telemetry.update();
+            return false;
+        }
+
+        // Routines (re-read on each init if the file changed)
+        routineProblems.setLength(0);
+        routines = Routines.load(routineProblems);
+        voltage = new VoltageCompensator(hardwareMap, clock);
+        health = new DriveHealth(hardwareMap, clock);
+        int driveMode = (int) Tuning.current().get(DRIVE_MODE);
+        if (driveMode != 0) {
+            velocityDrive = new VelocityDrive(hardwareMap, driveMode == 1 ? VelocityDrive.Mode.HUB : VelocityDrive.Mode.SOFTWARE, voltage, clock);
+        }
+        return true;
+    }
+
+    // One pass of the init report, between init and START
+    void reportInit() {
+        voltage.update(); // settles the battery filter before we move
+        boot.report(telemetry);
+        telemetry.addData("Vision", "Limelight: %s, Webcam: %s",
+                vision.hasLimelight() ? "yes" : "no", vision.hasWebcam() ? "yes" : "no");
+        if (vision.getLimelightMonitor() != null) vision.getLimelightMonitor().report(telemetry);
+        telemetry.addData("Heading", imuAvailable ? "IMU" : "fallback (no IMU yet)");
+        telemetry.addData("Routines", routines.getSource());
+        if (routineProblems.length() > 0) telemetry.addData("Routine file ignored", routineProblems);
         telemetry.addLine("AprilTag Challenge Ready");
         telemetry.update();
-        waitForStart();
-        runtime.reset();
-
-        int lastTagId = -1;
-        double lastTagSeenTime = runtime.seconds();
-        ChallengeState state = ChallengeState.WAIT_FOR_TAG;
-        int currentTagId = -1;
-        double stateStartTime = runtime.seconds();
-        double actionStartHeading = 0;
-        double actionStartX = 0;
-        double actionStartY = 0;
-        double actionTarget = 0;
+    }
 
-        while (opModeIsActive()) {
-            // Get tag info
-            LLResult result = limelight.getLatestResult();
-            boolean hasTag = false;
-            int seenTagId = -1;
-            double tagX = 0, tagY = 0, tagZ = 0;
-            double tagXDeg = 0, tagYDeg = 0;
-            if (result != null && result.isValid()) {
-                List<LLResultTypes.FiducialResult> fiducials = result.getFiducialResults();
-                if (fiducials != null && !fiducials.isEmpty()) {
-                    for (LLResultTypes.FiducialResult f : fiducials) {
-                        int id = f.getFiducialId();
-                        if (id == TAG_21 || id == TAG_22 || id == TAG_23) {
-                            hasTag = true;
-                            seenTagId = id;
-                            tagXDeg = f.getTargetXDegrees(); // degrees, horizontal offset
-                            tagYDeg = f.getTargetYDegrees(); // degrees, vertical offset
-                            // Get 3D position (robot pose in tag space)
-                            Pose3D robotPose = f.getRobotPoseTargetSpace();
-                            if (robotPose != null) {
-                                tagX = robotPose.getPosition().x; // meters, left/right
-                                tagY = robotPose.getPosition().y; // meters, up/down
-                                tagZ = robotPose.getPosition().z; // meters, forward (distance)
-                            }
-                            break;
-                        }
-                    }
+    // At START
+    void startChallenge() {
+        runtime = clock.newTimer();
+        reacquirer = new TagReacquirer(clock);
+        watchdog = new LoopWatchdog(LOOP_BUDGET_MS, clock);
+
+        lastTagId = -1;
+        lastTagSeenTime = runtime.seconds();
+        state = ChallengeState.WAIT_FOR_TAG;
+        currentTagId = -1;
+        stateStartTime = runtime.seconds();
+        actionStartHeading = 0;
+        actionStartX = actionStartY = 0;
+        pc = 0;
+        routineEnd = 0;
+        hadTag = false;
+        lastCaptureButton = false;
+        recorder = vision.getRecorder();
+    }
+
+    // One loop (without the sleep)
+    void step() {
+        tuning = Tuning.current(); // pick up gains changed from the tuning page
+        health.update();           // bulk read - before anything reads the motors
+
+        // Shed load if the loop keeps running long
+        watchdog.tick();
+        vision.setExtrasEnabled(watchdog.shouldRunVisionExtras());
+        if (recorder != null) recorder.setWritesPaused(!watchdog.shouldLog());
+
+        if (imuAvailable) headingTracker.update();
+        voltage.update();
+        readWheelDistances();
+        kinematics.update(wheelDistances, imuAvailable ? getHeading() : Double.NaN);
+
+        // Get tag info
+        vision.update(imuAvailable ? headingTracker.getRate() : 0.0);
+        tagFilter.setTurnRate(imuAvailable ? headingTracker.getRate() : 0.0);
+        boolean hasTag = false;
+        int seenTagId = -1;
+        double tagX = 0, tagY = 0, tagZ = 0;
+        double tagXDeg = 0, tagYDeg = 0;
+        for (int i = 0; i < vision.getCount(); i++) {
+            TagDetection d = vision.get(i);
+            int id = d.id;
+            if (routines.has(id)) {
+                tagFilter.accept(d); // an outlier is replaced by the last good values, so centering holds steady
+                hasTag = true;
+                seenTagId = id;
+                tagXDeg = d.bearingDeg;   // degrees, horizontal offset
+                tagYDeg = d.elevationDeg; // degrees, vertical offset
+                // 3D position (robot pose in tag space)
+                if (d.hasPose) {
+                    tagX = d.x; // meters, left/right
+                    tagY = d.y; // meters, up/down
+                    tagZ = d.z; // meters, forward (distance)
                 }
+                break;
             }
+        }
 
-            // Tag lost logic
-            if (hasTag) {
-                lastTagSeenTime = runtime.seconds();
-                lastTagId = seenTagId;
-            }
-            boolean tagLostTooLong = (runtime.seconds() - lastTagSeenTime) > TAG_LOST_TIMEOUT;
+        // Remember where the routine's tag is, so a center step can turn back to it if it drops out
+        reacquirer.update(getHeading(), kinematics.getX(), kinematics.getY());
+        if (hasTag && seenTagId == currentTagId) {
+            reacquirer.onSeen(tagXDeg, tagZ * INCHES_PER_METER / Math.cos(Math.toRadians(tagXDeg)));
+        }
 
-            // State machine
-            if (tagLostTooLong) {
-                state = ChallengeState.LOST;
-            }
+        // Tag lost logic
+        if (hasTag) {
+            lastTagSeenTime = runtime.seconds();
+            lastTagId = seenTagId;
+        }
+        boolean tagLostTooLong = (runtime.seconds() - lastTagSeenTime) > TAG_LOST_TIMEOUT;
 
+        // State machine
+        if (tagLostTooLong && state != ChallengeState.LOST) {
+            state = ChallengeState.LOST;
+            if (recorder != null) recorder.trigger("lost");
+        }
+
+        // Save the last few seconds of webcam frames on X, or if the tag drops out while centering
+        if (recorder != null) {
+            if (gamepad1.x && !lastCaptureButton) recorder.trigger("button");
+            if (hadTag && !hasTag && state == ChallengeState.RUN_ROUTINE
+                    && pc < routineEnd && routines.op(pc) == Routines.OP_CENTER) recorder.trigger("vision-loss");
+        }
+        lastCaptureButton = gamepad1.x;
+        hadTag = hasTag;
+
+        if (watchdog.isSafeStop()) {
+            // Missing deadlines badly - don't drive on stale data; pick up where we were once it recovers
+            stopAll();
+            telemetry.addLine("Loop overrunning - motors stopped");
+        } else {
             switch (state) {
                 case WAIT_FOR_TAG:
                     if (hasTag) {
                         currentTagId = seenTagId;
-                        state = ChallengeState.CENTER_ON_TAG;
-                        stateStartTime = runtime.seconds();
-                    }
-                    break;
-                case CENTER_ON_TAG: {
-                    double targetDist = (currentTagId == TAG_21) ? TAG21_DIST : (currentTagId == TAG_22) ? TAG22_DIST : TAG23_DIST;
-                    boolean centered = centerOnTag(tagXDeg, tagZ, targetDist, telemetry);
-                    if (centered) {
-                        state = ChallengeState.PAUSE1;
-                        stateStartTime = runtime.seconds();
-                    }
-                    break;
-                }
-                case PAUSE1:
-                    stopAll();
-                    if (runtime.seconds() - stateStartTime > 2.0) {
-                        state = ChallengeState.ACTION1;
-                        stateStartTime = runtime.seconds();
-                        actionStartHeading = getHeading();
-                        actionStartX = tagX;
-                        actionStartY = tagZ;
-                    }
-                    break;
-                case ACTION1:
-                    if (currentTagId == TAG_21) {
-                        // 360 spin
-                        boolean done = spinToHeading(actionStartHeading, 360, telemetry);
-                        if (done) { state = ChallengeState.PAUSE2; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_22) {
-                        // Move back 1 foot
-                        boolean done = moveInches(-12, telemetry);
-                        if (done) { state = ChallengeState.PAUSE2; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_23) {
-                        // Turn right 15 deg
-                        boolean done = spinToHeading(actionStartHeading, 15, telemetry);
-                        if (done) { state = ChallengeState.PAUSE2; stateStartTime = runtime.seconds(); }
-                    }
-                    break;
-                case PAUSE2:
-                    stopAll();
-                    if (runtime.seconds() - stateStartTime > 2.0) {
-                        state = ChallengeState.ACTION2;
+                        pc = routines.start(currentTagId);
+                        routineEnd = routines.end(currentTagId);
+                        state = ChallengeState.RUN_ROUTINE;
                         stateStartTime = runtime.seconds();
                         actionStartHeading = getHeading();
-                        actionStartX = tagX;
-                        actionStartY = tagZ;
-                    }
-                    break;
-                case ACTION2:
-                    if (currentTagId == TAG_21) {
-                        // Move right 1 foot
-                        boolean done = strafeInches(12, telemetry);
-                        if (done) { state = ChallengeState.PAUSE3; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_22) {
-                        // Move forward 2 feet
-                        boolean done = moveInches(24, telemetry);
-                        if (done) { state = ChallengeState.PAUSE3; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_23) {
-                        // Turn left 30 deg
-                        boolean done = spinToHeading(actionStartHeading, -30, telemetry);
-                        if (done) { state = ChallengeState.PAUSE3; stateStartTime = runtime.seconds(); }
+                        actionStartX = kinematics.getX();
+                        actionStartY = kinematics.getY();
                     }
                     break;
-                case PAUSE3:
-                    stopAll();
-                    if (runtime.seconds() - stateStartTime > 2.0) {
-                        state = ChallengeState.ACTION3;
+                case RUN_ROUTINE: {
+                    if (pc >= routineEnd) {
+                        state = ChallengeState.COMPLETE;
                         stateStartTime = runtime.seconds();
-                        actionStartHeading = getHeading();
-                        actionStartX = tagX;
-                        actionStartY = tagZ;
+                        break;
                     }
-                    break;
-                case ACTION3:
-                    if (currentTagId == TAG_21) {
-                        // Move left 2 feet
-                        boolean done = strafeInches(-24, telemetry);
-                        if (done) { state = ChallengeState.PAUSE4; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_22) {
-                        // Move back 1 foot
-                        boolean done = moveInches(-12, telemetry);
-                        if (done) { state = ChallengeState.PAUSE4; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_23) {
-                        // Turn right 15 deg
-                        boolean done = spinToHeading(actionStartHeading, 15, telemetry);
-                        if (done) { state = ChallengeState.PAUSE4; stateStartTime = runtime.seconds(); }
+                    double arg = routines.arg(pc);
+                    boolean done;
+                    switch (routines.op(pc)) {
+                        case Routines.OP_CENTER:
+                            // Only chase the tag this routine belongs to
+                            if (hasTag && seenTagId == currentTagId) {
+                                done = centerOnTag(tagXDeg, tagZ, arg, telemetry);
+                            } else if (imuAvailable && reacquirer.search()) {
+                                // Turn to where it should be now, then search either side
+                                spinToHeading(reacquirer.getTargetHeading(), 0, telemetry);
+                                telemetry.addData("Reacquire", "search step %d", reacquirer.getSearchStep());
+                                done = false;
+                            } else {
+                                stopAll();
+                                done = false;
+                            }
+                            break;
+                        case Routines.OP_WAIT:
+                            stopAll();
+                            done = runtime.seconds() - stateStartTime > arg;
+                            break;
+                        case Routines.OP_SPIN:
+                            done = spinToHeading(actionStartHeading, arg, telemetry);
+                            break;
+                        case Routines.OP_MOVE:
+                            done = translateInches(arg, 0, actionStartX, actionStartY, actionStartHeading,
+                                    runtime.seconds() - stateStartTime, telemetry);
+                            break;
+                        case Routines.OP_STRAFE:
+                        default:
+                            // Script strafes are positive to the right
+                            done = translateInches(0, -arg, actionStartX, actionStartY, actionStartHeading,
+                                    runtime.seconds() - stateStartTime, telemetry);
+                            break;
                     }
-                    break;
-                case PAUSE4:
-                    stopAll();
-                    if (runtime.seconds() - stateStartTime > 2.0) {
-                        state = ChallengeState.ACTION4;
+                    telemetry.addData("Step", "%d/%d: %s %.1f", pc - routines.start(currentTagId) + 1,
+                            routineEnd - routines.start(currentTagId), Routines.opName(routines.op(pc)), arg);
+                    if (done) {
+                        reacquirer.cancel();
+                        pc++;
                         stateStartTime = runtime.seconds();
                         actionStartHeading = getHeading();
-                        actionStartX = tagX;
-                        actionStartY = tagZ;
-                    }
-                    break;
-                case ACTION4:
-                    if (currentTagId == TAG_21) {
-                        // Move right 1 foot (center on tag)
-                        boolean done = strafeInches(12, telemetry);
-                        if (done) { state = ChallengeState.COMPLETE; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_22) {
-                        // 360 spin
-                        boolean done = spinToHeading(actionStartHeading, 360, telemetry);
-                        if (done) { state = ChallengeState.COMPLETE; stateStartTime = runtime.seconds(); }
-                    } else if (currentTagId == TAG_23) {
-                        // Center on tag at 4 feet
-                        boolean centered = centerOnTag(tagXDeg, tagZ, TAG23_DIST, telemetry);
-                        if (centered) { state = ChallengeState.COMPLETE; stateStartTime = runtime.seconds(); }
+                        actionStartX = kinematics.getX();
+                        actionStartY = kinematics.getY();
                     }
                     break;
+                }
                 case COMPLETE:
                     stopAll();
                     telemetry.addLine("Challenge complete! Waiting for new tag...");
@@ -287,65 +360,108 @@ public class AprilTagChallenge extends LinearOpMode {
                     }
                     break;
             }
+        }
 
-            telemetry.addData("State", state);
-            telemetry.addData("CurrentTagId", currentTagId);
-            telemetry.addData("TagSeen", hasTag ? seenTagId : -1);
-            telemetry.update();
-            sleep(20);
+        telemetry.addData("State", state);
+        telemetry.addData("CurrentTagId", currentTagId);
+        telemetry.addData("TagSeen", hasTag ? seenTagId : -1);
+        telemetry.addData("Battery", "%.2f V (powers x%.2f)", voltage.getVoltage(), voltage.getScale());
+        health.report(telemetry);
+        if (velocityDrive != null) {
+            telemetry.addData("Wheel Speed", "%s loop, left %.1f/%.1f, right %.1f/%.1f in/s (measured/target)", velocityDrive.getMode(),
+                    velocityDrive.getMeasured(DriveHealth.BACK_LEFT), velocityDrive.getTarget(DriveHealth.BACK_LEFT),
+                    velocityDrive.getMeasured(DriveHealth.BACK_RIGHT), velocityDrive.getTarget(DriveHealth.BACK_RIGHT));
+        }
+        if (currentTagId >= 0) {
+            telemetry.addData("Tag Filter", "rejected %d (median gate %d, motion gate %d)", tagFilter.getRejects(currentTagId),
+                    tagFilter.getHampelRejects(currentTagId), tagFilter.getInnovationRejects(currentTagId));
+        }
+        if (vision.getTuner() != null) {
+            VisionTuner tuner = vision.getTuner();
+            telemetry.addData("Webcam", "decimation %d, exposure %d ms, gain %d%s", tuner.getDecimation(),
+                    tuner.getExposureMs(), tuner.getGain(), tuner.isFastTurnMode() ? " (fast turn)" : "");
         }
+
+        // Full-rate copy of this loop for the web viewer (powers are filled in by setDrivePower)
+        streamSample.loopMs = watchdog.getLastCycleMs();
+        streamSample.tagCount = 0;
+        for (int i = 0; i < vision.getCount(); i++) {
+            TagDetection d = vision.get(i);
+            streamSample.addTag(d.id, d.bearingDeg, d.hasPose ? Math.hypot(d.x, d.z) * INCHES_PER_METER : 0);
+        }
+        LoopStream.publish(streamSample);
+
+        if (vision.getLimelightMonitor() != null) vision.getLimelightMonitor().report(telemetry);
+        watchdog.report(telemetry);
+        if (watchdog.shouldSendTelemetry()) telemetry.update();
+        else telemetry.clear();
+    }
+
+    void stopChallenge() {
         stopAll();
-        limelight.stop();
+        vision.stop();
     }
 
+    ChallengeState getState() { return state; }
+    int getCurrentTagId() { return currentTagId; }
+
     // --- Helper methods ---
     // Center on tag at a given distance (inches)
     private boolean centerOnTag(double tagXDeg, double tagZ, double targetDistIn, org.firstinspires.ftc.robotcore.external.Telemetry telemetry) {
         double targetDistM = targetDistIn / INCHES_PER_METER;
         double distError = tagZ - targetDistM;
-        double drive = Range.clip(distError * DRIVE_GAIN, -MAX_DRIVE_SPEED, MAX_DRIVE_SPEED);
-        if (Math.abs(drive) > 0 && Math.abs(drive) < MIN_DRIVE_POWER) drive = Math.signum(drive) * MIN_DRIVE_POWER;
-        double turn = Range.clip(-tagXDeg * TURN_GAIN, -MAX_TURN_SPEED, MAX_TURN_SPEED);
-        if (Math.abs(turn) > 0 && Math.abs(turn) < MIN_TURN_POWER) turn = Math.signum(turn) * MIN_TURN_POWER;
+        double drive = Range.clip(distError * tuning.get(DRIVE_GAIN), -tuning.get(MAX_DRIVE_SPEED), tuning.get(MAX_DRIVE_SPEED));
+        if (Math.abs(drive) > 0 && Math.abs(drive) < tuning.get(MIN_DRIVE_POWER)) drive = Math.signum(drive) * tuning.get(MIN_DRIVE_POWER);
+        double turn = Range.clip(-tagXDeg * tuning.get(TURN_GAIN), -tuning.get(MAX_TURN_SPEED), tuning.get(MAX_TURN_SPEED));
+        if (Math.abs(turn) > 0 && Math.abs(turn) < tuning.get(MIN_TURN_POWER)) turn = Math.signum(turn) * tuning.get(MIN_TURN_POWER);
         // Slew-rate limit (optional, can be added for extra smoothness)
         setDrivePower(drive, turn);
         telemetry.addData("CenterOnTag", "distErr=%.2f in, drive=%.2f, turn=%.2f", distError*INCHES_PER_METER, drive, turn);
-        return Math.abs(distError*INCHES_PER_METER) < 1.5 && Math.abs(tagXDeg) < CENTER_TOLERANCE_DEG;
+        return Math.abs(distError*INCHES_PER_METER) < 1.5 && Math.abs(tagXDeg) < tuning.get(CENTER_TOLERANCE_DEG);
     }
 
-    // Move forward/backward a given number of inches (relative, not field-centric)
-    private boolean moveInches(double inches, org.firstinspires.ftc.robotcore.external.Telemetry telemetry) {
-        double power = Range.clip(inches > 0 ? MAX_DRIVE_SPEED : -MAX_DRIVE_SPEED, -MAX_DRIVE_SPEED, MAX_DRIVE_SPEED);
-        setDrivePower(power, 0);
-        telemetry.addData("MoveInches", "target=%.1f", inches);
-        // For demo: just run for a fixed time (1 foot = ~0.5s at 0.25 power)
-        sleep((long)(Math.abs(inches) * 40));
-        setDrivePower(0, 0);
-        return true;
-    }
-
-    // Strafe right/left a given number of inches (positive=right, negative=left)
-    private boolean strafeInches(double inches, org.firstinspires.ftc.robotcore.external.Telemetry telemetry) {
-        // For tank drive, simulate with turn+drive (not true strafe)
-        // For mecanum, you would set left/right motors differently
-        // Here, just run left/right motors in opposite directions for a short time
-        double power = Range.clip(inches > 0 ? MAX_DRIVE_SPEED : -MAX_DRIVE_SPEED, -MAX_DRIVE_SPEED, MAX_DRIVE_SPEED);
-        frontLeft.setPower(-power);
-        backLeft.setPower(power);
-        frontRight.setPower(power);
-        backRight.setPower(-power);
-        telemetry.addData("StrafeInches", "target=%.1f", inches);
-        sleep((long)(Math.abs(inches) * 40));
-        setDrivePower(0, 0);
-        return true;
+    /**
+     * Drive a straight line, relative to the robot's position and heading when the step started
+     * (forward, and left), holding that heading. Mecanum, so any direction works; distance comes
+     * from the wheel encoders (dead reckoning), with a time limit in case they aren't connected.
+     */
+    private boolean translateInches(double forwardIn, double leftIn, double startX, double startY, double startHeading,
+                                    double stepSec, org.firstinspires.ftc.robotcore.external.Telemetry telemetry) {
+        double h = Math.toRadians(startHeading);
+        double errorX = startX + forwardIn * Math.cos(h) - leftIn * Math.sin(h) - kinematics.getX();
+        double errorY = startY + forwardIn * Math.sin(h) + leftIn * Math.cos(h) - kinematics.getY();
+        double remaining = Math.hypot(errorX, errorY);
+        double timeoutSec = MOVE_TIMEOUT_BASE_SEC + 2.0 * Math.hypot(forwardIn, leftIn) / (tuning.get(MAX_DRIVE_SPEED) * VelocityDrive.MAX_WHEEL_IPS);
+        if (remaining < MOVE_TOLERANCE_IN || stepSec > timeoutSec) {
+            setDrivePower(0, 0);
+            telemetry.addData("Translate", "done, %.1f in off%s", remaining, stepSec > timeoutSec ? " (timed out)" : "");
+            return true;
+        }
+        // What's left, in the robot's frame now
+        double c = Math.toRadians(kinematics.getHeading());
+        double forwardError = errorX * Math.cos(c) + errorY * Math.sin(c);
+        double leftError = -errorX * Math.sin(c) + errorY * Math.cos(c);
+        double speed = Range.clip(remaining * tuning.get(MOVE_GAIN), tuning.get(MIN_DRIVE_POWER), tuning.get(MAX_DRIVE_SPEED));
+        double turn = imuAvailable ? Range.clip((startHeading - getHeading()) * tuning.get(SPIN_GAIN), -tuning.get(MAX_TURN_SPEED), tuning.get(MAX_TURN_SPEED)) : 0.0;
+        setDrive(speed * forwardError / remaining, speed * leftError / remaining, turn);
+        telemetry.addData("Translate", "target fwd %.1f left %.1f, %.1f in to go", forwardIn, leftIn, remaining);
+        return false;
     }
 
-    // Spin in place by a given number of degrees (relative to start heading)
+    // Spin in place by a given number of degrees (relative to start heading, any size - 360 is a full turn)
     private boolean spinToHeading(double startHeading, double deltaDeg, org.firstinspires.ftc.robotcore.external.Telemetry telemetry) {
-        double targetHeading = startHeading + deltaDeg;
+        double targetHeading = HeadingTracker.relativeTarget(startHeading, deltaDeg);
         double currentHeading = getHeading();
-        double error = targetHeading - currentHeading;
-        double turn = Range.clip(error * 0.012, -MAX_TURN_SPEED, MAX_TURN_SPEED);
+        double rate = imuAvailable ? headingTracker.getRate() : 0.0;
+        double error = targetHeading - currentHeading; // no wrapping: heading is continuous
+        if (Math.abs(error) < tuning.get(SPIN_TOLERANCE_DEG) && Math.abs(rate) < tuning.get(SPIN_SETTLE_RATE_DPS)) {
+            setDrivePower(0, 0);
+            telemetry.addData("SpinToHeading", "target=%.1f, curr=%.1f, done", targetHeading, currentHeading);
+            return true;
+        }
+        double turn = Range.clip(error * tuning.get(SPIN_GAIN) - rate * tuning.get(SPIN_RATE_GAIN), -tuning.get(MAX_TURN_SPEED), tuning.get(MAX_TURN_SPEED));
+        // Stalled short of the target: keep enough power to finish the last few degrees
+        if (Math.abs(turn) < tuning.get(MIN_TURN_POWER) && Math.abs(rate) < tuning.get(SPIN_SETTLE_RATE_DPS)) turn = Math.signum(error) * tuning.get(MIN_TURN_POWER);
         setDrivePower(0, turn);
         
         // Update accumulated heading if IMU not available (approximate)
@@ -353,23 +469,56 @@ public class AprilTagChallenge extends LinearOpMode {
             accumulatedHeading += turn * 0.5; // Rough estimate of heading change per cycle
         }
         
-        telemetry.addData("SpinToHeading", "target=%.1f, curr=%.1f, err=%.1f", targetHeading, currentHeading, error);
+        telemetry.addData("SpinToHeading", "target=%.1f, curr=%.1f, err=%.1f, rate=%.0f", targetHeading, currentHeading, error, rate);
         telemetry.addData("IMU", imuAvailable ? "Active" : "Fallback mode");
-        if (Math.abs(error) < 3.0) {
-            setDrivePower(0, 0);
-            return true;
-        }
         return false;
     }
 
-    // Set drive and turn power (tank drive)
+    // Set drive and turn power (no strafe)
     private void setDrivePower(double drive, double turn) {
-        double left = drive - turn;
-        double right = drive + turn;
-        frontLeft.setPower(left);
-        backLeft.setPower(left);
-        frontRight.setPower(right);
-        backRight.setPower(right);
+        setDrive(drive, 0, turn);
+    }
+
+    /**
+     * Mecanum drive. Commands are fractions of top wheel speed, so they work as powers: a wheel
+     * gets forward - left - turn (FL) and so on, scaled down together if any is over 1. Open
+     * loop they go out as powers (feedforward, scaled for the battery); in a velocity mode as
+     * wheel speeds.
+     */
+    private void setDrive(double forward, double left, double turn) {
+        double max = VelocityDrive.MAX_WHEEL_IPS;
+        kinematics.inverse(forward * max, left * max, kinematics.turnRateFor(turn * max), wheelSpeeds);
+        MecanumKinematics.desaturate(wheelSpeeds, max);
+        for (int i = 0; i < 4; i++) wheelSpeeds[i] = health.limit(i, wheelSpeeds[i] / max) * max;
+        if (velocityDrive != null) {
+            velocityDrive.setWheelSpeeds(wheelSpeeds[0], wheelSpeeds[1], wheelSpeeds[2], wheelSpeeds[3]);
+        } else {
+            frontLeft.setPower(power(wheelSpeeds[DriveHealth.FRONT_LEFT]));
+            frontRight.setPower(power(wheelSpeeds[DriveHealth.FRONT_RIGHT]));
+            backLeft.setPower(power(wheelSpeeds[DriveHealth.BACK_LEFT]));
+            backRight.setPower(power(wheelSpeeds[DriveHealth.BACK_RIGHT]));
+        }
+        streamSample.setPowers(wheelSpeeds[0] / max, wheelSpeeds[1] / max, wheelSpeeds[2] / max, wheelSpeeds[3] / max);
+    }
+
+    // Open-loop motor power for a wheel speed (in/s)
+    private double power(double wheelIps) {
+        return voltage.compensate(MecanumKinematics.feedforward(wheelIps, 1.0 / VelocityDrive.MAX_WHEEL_IPS, tuning.get(WHEEL_KS)));
+    }
+
+    // Wheel encoder travel in inches, FL, FR, BL, BR
+    private void readWheelDistances() {
+        wheelDistances[DriveHealth.FRONT_LEFT] = DriveEncoders.inches(frontLeft);
+        wheelDistances[DriveHealth.FRONT_RIGHT] = DriveEncoders.inches(frontRight);
+        wheelDistances[DriveHealth.BACK_LEFT] = DriveEncoders.inches(backLeft);
+        wheelDistances[DriveHealth.BACK_RIGHT] = DriveEncoders.inches(backRight);
+    }
+
+    private DcMotor initMotor(String name, DcMotor.Direction direction) {
+        DcMotor motor = hardwareMap.get(DcMotor.class, name);
+        motor.setDirection(direction);
+        motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+        return motor;
     }
 
     // Stop all motors
@@ -377,11 +526,10 @@ public class AprilTagChallenge extends LinearOpMode {
         setDrivePower(0, 0);
     }
 
-    // IMU heading (yaw, in degrees, -180 to 180)
+    // IMU heading in degrees, continuous (not wrapped to -180..180)
     private double getHeading() {
         if (imuAvailable) {
-            YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
-            return angles.getYaw(AngleUnit.DEGREES);
+            return headingTracker.getHeading();
         } else {
             // Fallback: use accumulated heading (not as accurate, but works)
             return accumulatedHeading;
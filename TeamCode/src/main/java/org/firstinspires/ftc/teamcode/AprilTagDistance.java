@@ -44,16 +44,51 @@ import java.util.List;
  * TeleOp: Display AprilTag distance and offset measurements.
  * Robot remains stationary while showing distance (forward) and lateral offset (left/right)
  * for any detected AprilTag in inches.
+ *
+ * Press B to switch to measurement mode, which shows per-tag noise statistics for each axis
+ * (mean, standard deviation, min/max, median of the last samples) and how many fresh
+ * measurements per second are arriving - for characterizing the Limelight against range
+ * and angle, and picking filter gains. Press A to reset the statistics.
  */
 
 @TeleOp(name="AprilTag Distance Display", group="TeleOp")
 public class AprilTagDistance extends LinearOpMode {
 
     private Limelight3A limelight;
+    private LimelightMonitor limelightMonitor;
+    private static final long LIMELIGHT_WARMUP_MS = 3000;  // wait this long for its first frame at init
     private ElapsedTime runtime = new ElapsedTime();
     
     private static final double INCHES_PER_METER = 39.3701;
 
+    // Measurement mode
+    private static final int MAX_TAG_ID = 63;
+    private static final int MEDIAN_WINDOW = 31;
+    private final TagStats[] stats = new TagStats[MAX_TAG_ID + 1]; // created when a tag is first seen
+
+    /** Noise statistics for one tag, inches. */
+    private static class TagStats {
+        final RollingStats forward = new RollingStats(MEDIAN_WINDOW);
+        final RollingStats lateral = new RollingStats(MEDIAN_WINDOW);
+        final RollingStats vertical = new RollingStats(MEDIAN_WINDOW);
+        final RollingStats bearing = new RollingStats(MEDIAN_WINDOW);
+        long firstNanos = 0L, lastNanos = 0L;
+
+        void reset() {
+            forward.reset();
+            lateral.reset();
+            vertical.reset();
+            bearing.reset();
+            firstNanos = lastNanos = 0L;
+        }
+
+        // Fresh measurements per second since the last reset
+        double rateHz() {
+            long n = forward.getCount();
+            return (n > 1 && lastNanos > firstNanos) ? (n - 1) / ((lastNanos - firstNanos) / 1.0e9) : 0.0;
+        }
+    }
+
     @Override
     public void runOpMode() {
         telemetry.addData("Status", "Initializing...");
@@ -61,27 +96,52 @@ public class AprilTagDistance extends LinearOpMode {
 
         // Initialize the Limelight
         limelight = hardwareMap.get(Limelight3A.class, "limelight");
-        limelight.setPollRateHz(100); // Poll 100 times per second
-        limelight.pipelineSwitch(0);  // Switch to pipeline 0 (AprilTag detection)
-        limelight.start(); // Start polling for data
+        limelightMonitor = new LimelightMonitor(limelight);
+        limelightMonitor.start(0);  // pipeline 0 (AprilTag detection); poll rate follows the camera's frame rate
+        if (!limelightMonitor.awaitFirstFrame(LIMELIGHT_WARMUP_MS)) {
+            telemetry.addData("Limelight", "No frames after %d ms - check the connection", LIMELIGHT_WARMUP_MS);
+        }
 
         telemetry.addData("Status", "Ready - Robot will NOT move");
         telemetry.addData("Info", "Displays distance to AprilTags in inches");
+        telemetry.addData("Controls", "B: live / measurement mode, A: reset statistics");
         telemetry.update();
 
         // Wait for the game to start (driver presses START)
         waitForStart();
         runtime.reset();
 
+        boolean measuring = false;
+        boolean lastModeButton = false;
+        long lastResultNanos = 0L;
+
         // Run until the end of the match (driver presses STOP)
         while (opModeIsActive()) {
 
             // Get the latest result from Limelight
             LLResult result = limelight.getLatestResult();
 
+            if (gamepad1.b && !lastModeButton) measuring = !measuring;
+            lastModeButton = gamepad1.b;
+            if (gamepad1.a) {
+                for (TagStats t : stats) if (t != null) t.reset();
+            }
+
             telemetry.addData("Runtime", "%.1f sec", runtime.seconds());
             telemetry.addData("---", "---");
 
+            if (measuring) {
+                // Only count each Limelight frame once, however often we poll
+                if (result != null && result.isValid() && result.getControlHubTimeStampNanos() != lastResultNanos) {
+                    lastResultNanos = result.getControlHubTimeStampNanos();
+                    recordMeasurements(result, lastResultNanos);
+                }
+                showStatistics();
+                telemetry.update();
+                sleep(5); // keep up with the Limelight's frame rate
+                continue;
+            }
+
             // Check if we have valid data
             if (result != null && result.isValid()) {
                 // Get AprilTag results
@@ -129,6 +189,7 @@ public class AprilTagDistance extends LinearOpMode {
                 telemetry.addData("Limelight", "No valid data");
             }
 
+            limelightMonitor.report(telemetry);
             telemetry.update();
 
             // Small delay to prevent overwhelming the system
@@ -136,9 +197,48 @@ public class AprilTagDistance extends LinearOpMode {
         }
 
         // Stop the Limelight when done
-        limelight.stop();
+        limelightMonitor.stop();
         
         telemetry.addData("Status", "OpMode Stopped");
         telemetry.update();
     }
+
+    private void recordMeasurements(LLResult result, long nanos) {
+        List<LLResultTypes.FiducialResult> fiducials = result.getFiducialResults();
+        if (fiducials == null) return;
+        for (LLResultTypes.FiducialResult fiducial : fiducials) {
+            int tagId = fiducial.getFiducialId();
+            Pose3D robotPose = fiducial.getRobotPoseTargetSpace();
+            if (tagId < 0 || tagId > MAX_TAG_ID || robotPose == null) continue;
+            if (stats[tagId] == null) stats[tagId] = new TagStats();
+            TagStats t = stats[tagId];
+            t.forward.add(robotPose.getPosition().z * INCHES_PER_METER);
+            t.lateral.add(robotPose.getPosition().x * INCHES_PER_METER);
+            t.vertical.add(robotPose.getPosition().y * INCHES_PER_METER);
+            t.bearing.add(fiducial.getTargetXDegrees());
+            if (t.firstNanos == 0L) t.firstNanos = nanos;
+            t.lastNanos = nanos;
+        }
+    }
+
+    private void showStatistics() {
+        telemetry.addData("Mode", "Measurement (A: reset, B: live)");
+        boolean any = false;
+        for (int id = 0; id <= MAX_TAG_ID; id++) {
+            TagStats t = stats[id];
+            if (t == null || t.forward.getCount() == 0) continue;
+            any = true;
+            telemetry.addData("Tag " + id, "%d samples, %.1f Hz", t.forward.getCount(), t.rateHz());
+            showAxis("  Forward", t.forward, "in");
+            showAxis("  Lateral", t.lateral, "in");
+            showAxis("  Vertical", t.vertical, "in");
+            showAxis("  Bearing", t.bearing, "°");
+        }
+        if (!any) telemetry.addData("Statistics", "No tags measured yet");
+    }
+
+    private void showAxis(String caption, RollingStats s, String unit) {
+        telemetry.addData(caption, "mean %.2f sd %.3f min %.2f max %.2f med %.2f %s",
+                s.getMean(), s.getStdDev(), s.getMin(), s.getMax(), s.getMedian(), unit);
+    }
 }
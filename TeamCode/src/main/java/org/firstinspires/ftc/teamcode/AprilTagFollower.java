@@ -32,12 +32,14 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
 import com.qualcomm.hardware.limelightvision.Limelight3A;
 import com.qualcomm.hardware.limelightvision.LLResult;
 import com.qualcomm.hardware.limelightvision.LLResultTypes;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
 
 import java.util.List;
 
@@ -45,6 +47,8 @@ import java.util.List;
  * TeleOp: Uses the Limelight camera to detect AprilTag 21 and rotate to keep it centered.
  * The robot rotates left/right to keep the tag horizontally centered in the camera view.
  * It does NOT drive forward; it only rotates in place while the user has this TeleOp running.
+ * If tag 21 drops out of view, it turns to where the IMU and wheel encoders say the tag should be now
+ * (see TagReacquirer) instead of just stopping.
  */
 
 @TeleOp(name="AprilTag Center Tag 21", group="TeleOp")
@@ -57,6 +61,10 @@ public class AprilTagFollower extends LinearOpMode {
     private DcMotor backLeft = null;
     private DcMotor backRight = null;
     private Limelight3A limelight;
+    private LimelightMonitor limelightMonitor;
+    private static final long LIMELIGHT_WARMUP_MS = 3000;  // wait this long for its first frame at init
+    private HeadingTracker headingTracker;              // null without an IMU - then no reacquisition
+    private final TagReacquirer reacquirer = new TagReacquirer();
 
     // AprilTag following parameters
     private static final int TARGET_TAG_ID = 21;
@@ -70,6 +78,7 @@ public class AprilTagFollower extends LinearOpMode {
     private static final double DRIVE_SPEED = 0.25;      // Slow approach speed
     private static final double MIN_DRIVE_POWER = 0.12;  // Minimum drive power to overcome friction
     private static final double MAX_DRIVE_SLEW_PER_SEC = 2.0; // Slew rate for drive smoothing
+    private static final double INCHES_PER_METER = 39.3701;
     // Slew-rate limiting to smooth sudden changes in turn power (units: power per second)
     private static final double MAX_TURN_SLEW_PER_SEC = 2.0; // e.g., change by at most 0.04 per 20ms
 
@@ -103,9 +112,21 @@ public class AprilTagFollower extends LinearOpMode {
 
         // Initialize the Limelight
         limelight = hardwareMap.get(Limelight3A.class, "limelight");
-        limelight.setPollRateHz(100); // Poll 100 times per second
-        limelight.pipelineSwitch(0);  // Switch to pipeline 0 (AprilTag detection)
-        limelight.start(); // Start polling for data
+        limelightMonitor = new LimelightMonitor(limelight);
+        limelightMonitor.start(0);  // pipeline 0 (AprilTag detection); poll rate follows the camera's frame rate
+        if (!limelightMonitor.awaitFirstFrame(LIMELIGHT_WARMUP_MS)) {
+            telemetry.addData("Limelight", "No frames after %d ms - check the connection", LIMELIGHT_WARMUP_MS);
+        }
+
+        // IMU (optional) - lets us predict where the tag went when it leaves the frame
+        try {
+            IMU imu = hardwareMap.get(IMU.class, "imu");
+            headingTracker = new HeadingTracker(imu);
+            headingTracker.reset();
+        } catch (Exception e) {
+            headingTracker = null;
+            telemetry.addData("IMU", "Not available - no tag reacquisition");
+        }
 
         telemetry.addData("Status", "Ready to start");
         telemetry.addData("Target", "AprilTag ID %d", TARGET_TAG_ID);
@@ -118,12 +139,18 @@ public class AprilTagFollower extends LinearOpMode {
         // Run until the end of the match (driver presses STOP)
         while (opModeIsActive()) {
 
-            // Get the latest result from Limelight
-            LLResult result = limelight.getLatestResult();
+            // Get the latest result from Limelight (none if it has stopped producing frames - the last one is stale)
+            LLResult result = limelightMonitor.isUsable() ? limelight.getLatestResult() : null;
 
             boolean hasTag = false;
             int seenTagId = -1;
             double targetX = 0; // Horizontal offset in degrees for the chosen tag
+            double targetRangeIn = 0;
+
+            if (headingTracker != null) {
+                headingTracker.update();
+                reacquirer.update(headingTracker.getHeading(), forwardInches());
+            }
 
             // Check if we have valid data
             if (result != null && result.isValid()) {
@@ -145,17 +172,35 @@ public class AprilTagFollower extends LinearOpMode {
                         hasTag = true;
                         seenTagId = choice.getFiducialId();
                         targetX = choice.getTargetXDegrees();
+                        Pose3D robotPose = choice.getRobotPoseTargetSpace();
+                        if (robotPose != null) {
+                            targetRangeIn = robotPose.getPosition().z * INCHES_PER_METER / Math.cos(Math.toRadians(targetX));
+                        }
                         telemetry.addData("Status", "Tag %d FOUND", seenTagId);
                         telemetry.addData("Horizontal Offset", "%.2f degrees", targetX);
                     }
                 }
             }
 
+            // Tag 21 out of view: turn to where it should be now, then search around there
+            boolean reacquiring = false;
+            if (hasTag && seenTagId == TARGET_TAG_ID) {
+                reacquirer.onSeen(targetX, targetRangeIn);
+            } else if (hasTag) {
+                reacquirer.cancel();
+            } else if (headingTracker != null && reacquirer.search()) {
+                reacquiring = true;
+                seenTagId = TARGET_TAG_ID;
+                targetX = reacquirer.getPredictedBearing();
+                telemetry.addData("Status", "Reacquiring Tag %d (search step %d)", TARGET_TAG_ID, reacquirer.getSearchStep());
+                telemetry.addData("Predicted Offset", "%.2f degrees", targetX);
+            }
+
             // Control logic - turn to center the tag and drive forward if tag 21
             double turnPower = 0;
             double drivePower = 0;
 
-            if (hasTag) {
+            if (hasTag || reacquiring) {
                 // Determine behavior: normal (center) for tag 21; shy (turn away) for 22/23
                 boolean shy = (seenTagId == SHY_TAG_ID_1 || seenTagId == SHY_TAG_ID_2);
 
@@ -167,7 +212,9 @@ public class AprilTagFollower extends LinearOpMode {
                 // If close to centered and not shy, stop turning and drive forward (tag 21 only)
                 if (!shy && Math.abs(targetX) < CENTER_TOLERANCE) {
                     desiredTurn = 0;
-                    if (seenTagId == TARGET_TAG_ID) {
+                    if (reacquiring) {
+                        telemetry.addData("Action", "Looking where the tag should be");
+                    } else if (seenTagId == TARGET_TAG_ID) {
                         drivePower = DRIVE_SPEED; // Drive toward tag 21
                         telemetry.addData("Action", "CENTERED - Approaching tag!");
                     } else {
@@ -264,6 +311,7 @@ public class AprilTagFollower extends LinearOpMode {
             telemetry.addData("Drive Power", "%.3f", drivePower);
             telemetry.addData("Turn Power", "%.3f", turnPower);
             telemetry.addData("Runtime", "%.1f sec", runtime.seconds());
+            limelightMonitor.report(telemetry);
             telemetry.update();
 
             // Small delay to prevent overwhelming the system
@@ -272,12 +320,19 @@ public class AprilTagFollower extends LinearOpMode {
 
         // Stop all motion
         stopMotors();
-        limelight.stop();
+        limelightMonitor.stop();
         
         telemetry.addData("Status", "OpMode Stopped");
         telemetry.update();
     }
 
+    /**
+     * Distance driven forward, inches, from the average of the drive encoders (0 if none are connected)
+     */
+    private double forwardInches() {
+        return DriveEncoders.forwardInches(frontLeft, frontRight, backLeft, backRight);
+    }
+
     /**
      * Stop all motors
      */
@@ -0,0 +1,45 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import org.firstinspires.ftc.vision.opencv.ColorRange;
+
+/**
+ * TeleOp: Track a purple artifact with the webcam and show where it is.
+ * Robot remains stationary. Shows how much of the frame is being searched and the camera fps,
+ * to check that the ROI tracking in GameElementDetector is paying off.
+ */
+@TeleOp(name="Artifact Tracker", group="TeleOp")
+public class ArtifactTracker extends LinearOpMode {
+
+    @Override
+    public void runOpMode() {
+        telemetry.addData("Status", "Initializing...");
+        telemetry.update();
+
+        GameElementDetector detector = new GameElementDetector(hardwareMap, ColorRange.ARTIFACT_PURPLE);
+
+        telemetry.addData("Status", "Ready - Robot will NOT move");
+        telemetry.update();
+        waitForStart();
+
+        while (opModeIsActive()) {
+            boolean tracking = detector.update();
+
+            if (tracking) {
+                telemetry.addData("Artifact", "(%.0f, %.0f) %.0fx%.0f px",
+                        detector.getCenterX(), detector.getCenterY(), detector.getWidth(), detector.getHeight());
+            } else {
+                telemetry.addData("Artifact", "Not found");
+            }
+            telemetry.addData("Search Area", "%.0f%% of frame", detector.getSearchFraction() * 100.0);
+            telemetry.addData("Camera FPS", "%.1f", detector.getFps());
+            telemetry.addData("Hits/Misses", "%d / %d", detector.getHits(), detector.getMisses());
+            telemetry.update();
+
+            sleep(20);
+        }
+
+        detector.close();
+    }
+}
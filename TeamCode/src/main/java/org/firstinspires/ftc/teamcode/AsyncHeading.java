@@ -0,0 +1,88 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * HeadingTracker on its own thread, so reading the IMU (a few ms over I2C) stays out of the
+ * control loop. The loop reads the latest cached heading and rate, like Odometry's pose.
+ */
+public class AsyncHeading {
+    private static final long POLL_INTERVAL_MS = 5;
+
+    private final HeadingTracker tracker;
+    private final Object lock = new Object();
+    private double heading = 0.0, rate = 0.0;   // guarded by lock
+    private long timestampNanos = 0L;           // guarded by lock; 0 until the first reading
+
+    private Thread pollThread;
+    private volatile boolean running = false;
+
+    public AsyncHeading(HeadingTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        pollThread = new Thread(this::pollLoop, "Heading");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (pollThread != null) {
+            pollThread.interrupt();
+            try {
+                pollThread.join(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pollThread = null;
+        }
+    }
+
+    private void pollLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                tracker.update();
+                synchronized (lock) {
+                    heading = tracker.getHeading();
+                    rate = tracker.getRate();
+                    timestampNanos = System.nanoTime();
+                }
+            } catch (RuntimeException e) {
+                // I2C hiccup - try again next pass
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Continuous heading, degrees CCW (see HeadingTracker)
+    public double getHeading() {
+        synchronized (lock) {
+            return heading;
+        }
+    }
+
+    public double getRate() {
+        synchronized (lock) {
+            return rate;
+        }
+    }
+
+    // False until the first reading arrives
+    public boolean hasReading() {
+        synchronized (lock) {
+            return timestampNanos != 0L;
+        }
+    }
+
+    public double getAgeMs() {
+        synchronized (lock) {
+            return timestampNanos == 0L ? Double.POSITIVE_INFINITY : (System.nanoTime() - timestampNanos) / 1.0e6;
+        }
+    }
+}
@@ -64,6 +64,8 @@ public class BasicOpMode_Linear extends LinearOpMode {
     private DcMotor backLeft = null;
     private DcMotor backRight = null;
     private Limelight3A limelight;
+    private LimelightMonitor limelightMonitor;
+    private static final long LIMELIGHT_WARMUP_MS = 3000;  // wait this long for its first frame at init
 
     @Override
     public void runOpMode() {
@@ -88,12 +90,14 @@ public class BasicOpMode_Linear extends LinearOpMode {
         // Initialize the Limelight
         limelight = hardwareMap.get(Limelight3A.class, "limelight");
 
-        // Set polling rate and start the Limelight
-        limelight.setPollRateHz(100); // Poll 100 times per second
-        limelight.pipelineSwitch(0);  // Switch to pipeline 0
-        limelight.start(); // Start polling for data
-
-        telemetry.addData("Limelight", "Initialized");
+        // Start the Limelight on pipeline 0; the monitor sets the poll rate to match its frame rate
+        limelightMonitor = new LimelightMonitor(limelight);
+        limelightMonitor.start(0);
+        if (limelightMonitor.awaitFirstFrame(LIMELIGHT_WARMUP_MS)) {
+            telemetry.addData("Limelight", "Initialized, first frame after %.1f s", limelightMonitor.getTimeToFirstFrameMs() / 1000.0);
+        } else {
+            telemetry.addData("Limelight", "No frames after %d ms - check the connection", LIMELIGHT_WARMUP_MS);
+        }
         telemetry.update();
 
         // Wait for the game to start (driver presses START)
@@ -164,10 +168,11 @@ public class BasicOpMode_Linear extends LinearOpMode {
                 telemetry.addData("Limelight", "No valid data");
             }
 
+            limelightMonitor.report(telemetry);
             telemetry.update();
         }
 
         // Stop the Limelight when done
-        limelight.stop();
+        limelightMonitor.stop();
     }
 }
\ No newline at end of file
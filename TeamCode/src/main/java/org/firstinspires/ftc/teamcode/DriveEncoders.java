@@ -0,0 +1,25 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * Drive wheel encoders to inches, for everything that reads them. The SDK already reports
+ * position and velocity in the motor's configured direction (a REVERSE motor's counts are
+ * negated too), so once the directions are set, forward is positive on every wheel.
+ */
+public final class DriveEncoders {
+    public static final double TICKS_PER_INCH = 41.8;    // goBILDA 312 rpm motor, 104 mm wheel
+
+    private DriveEncoders() {
+    }
+
+    // Wheel travel, inches
+    public static double inches(DcMotor motor) {
+        return motor.getCurrentPosition() / TICKS_PER_INCH;
+    }
+
+    // Distance driven forward, inches, from the average of the four wheels (0 if none are connected)
+    public static double forwardInches(DcMotor frontLeft, DcMotor frontRight, DcMotor backLeft, DcMotor backRight) {
+        return (inches(frontLeft) + inches(frontRight) + inches(backLeft) + inches(backRight)) / 4.0;
+    }
+}
@@ -0,0 +1,144 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.util.Range;
+import com.qualcomm.robotcore.util.RobotLog;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+import java.util.List;
+
+/**
+ * Watches the four drive motors for stalls and for total current high enough to brown out the
+ * hub, and cuts power back when it sees either.
+ * <ul>
+ *   <li>Stall: a motor commanded well above zero, drawing current, that has barely turned for a while is held
+ *       to a low power until it moves again (or the command drops).</li>
+ *   <li>Current: as the total draw passes WARN_AMPS every drive power is scaled down, reaching
+ *       MIN_SCALE at LIMIT_AMPS; the scale drops at once and ramps back up slowly.</li>
+ * </ul>
+ * Velocities come from one bulk read per loop (the hubs are put in MANUAL bulk caching, and
+ * update() clears the cache - call it at the top of the loop, before anything reads a motor).
+ * Current isn't in the bulk packet and costs a command per motor, so one motor is sampled per
+ * loop in turn. Stalls and limiting are logged to the robot log (RobotLog, tag "DriveHealth")
+ * when they start and end, with the readings, for going through after a match.
+ */
+public class DriveHealth {
+    public static final int FRONT_LEFT = 0, FRONT_RIGHT = 1, BACK_LEFT = 2, BACK_RIGHT = 3;
+    private static final String[] NAMES = {"frontLeft", "frontRight", "backLeft", "backRight"};
+
+    private static final double STALL_MIN_POWER = 0.3;       // commanded at least this...
+    private static final double STALL_MAX_TPS = 40.0;        // ...but turning slower than this (ticks/s)
+    private static final double STALL_AMPS = 3.5;            // ...while drawing real current (so missing encoders don't look like a stall)
+    private static final double STALL_SEC = 0.5;             // for this long
+    private static final double STALL_POWER_CAP = 0.25;      // what a stalled motor is allowed
+    private static final double WARN_AMPS = 14.0;            // total drive current where limiting starts
+    private static final double LIMIT_AMPS = 20.0;           // total where it reaches MIN_SCALE
+    private static final double MIN_SCALE = 0.4;
+    private static final double RECOVER_PER_SEC = 0.5;       // scale ramps back up this fast
+
+    private final DcMotorEx[] motors = new DcMotorEx[4];
+    private final List<LynxModule> hubs;
+    private final RobotClock clock;
+
+    private final double[] commanded = new double[4];
+    private final double[] velocity = new double[4];         // ticks/s
+    private final double[] current = new double[4];          // amps, latest sample
+    private final long[] slowSinceNanos = new long[4];       // 0 = not slow
+    private final boolean[] stalled = new boolean[4];
+    private int nextCurrent = 0;
+    private double totalAmps = 0.0, peakAmps = 0.0;
+    private double scale = 1.0;
+    private boolean limiting = false;
+    private long lastNanos = 0L;
+    private int stallEvents = 0, limitEvents = 0;
+
+    public DriveHealth(HardwareMap hardwareMap, RobotClock clock) {
+        this.clock = clock;
+        for (int i = 0; i < 4; i++) motors[i] = hardwareMap.get(DcMotorEx.class, NAMES[i]);
+        hubs = hardwareMap.getAll(LynxModule.class);
+        for (LynxModule hub : hubs) hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+    }
+
+    public DriveHealth(HardwareMap hardwareMap) {
+        this(hardwareMap, RobotClock.SYSTEM);
+    }
+
+    // Read the motors and update stall and current state. Once per loop, first thing.
+    public void update() {
+        long now = clock.nanoTime();
+        double dt = (lastNanos == 0L) ? 0.0 : (now - lastNanos) / 1.0e9;
+        lastNanos = now;
+
+        for (LynxModule hub : hubs) hub.clearBulkCache();
+        for (int i = 0; i < 4; i++) velocity[i] = motors[i].getVelocity();
+        current[nextCurrent] = motors[nextCurrent].getCurrent(CurrentUnit.AMPS);
+        nextCurrent = (nextCurrent + 1) % 4;
+
+        totalAmps = current[0] + current[1] + current[2] + current[3];
+        peakAmps = Math.max(peakAmps, totalAmps);
+
+        for (int i = 0; i < 4; i++) {
+            boolean pushing = Math.abs(commanded[i]) >= STALL_MIN_POWER;
+            boolean turning = Math.abs(velocity[i]) >= STALL_MAX_TPS;
+            if (stalled[i]) {
+                // The capped power draws less, so only motion or letting go clears it
+                if (turning || !pushing) {
+                    stalled[i] = false;
+                    slowSinceNanos[i] = 0L;
+                    RobotLog.ii("DriveHealth", "%s stall cleared: velocity %.0f tps, command %.2f", NAMES[i], velocity[i], commanded[i]);
+                }
+            } else if (!pushing || turning || current[i] <= STALL_AMPS) {
+                slowSinceNanos[i] = 0L;
+            } else if (slowSinceNanos[i] == 0L) {
+                slowSinceNanos[i] = now;
+            } else if ((now - slowSinceNanos[i]) / 1.0e9 > STALL_SEC) {
+                stalled[i] = true;
+                stallEvents++;
+                RobotLog.ww("DriveHealth", "%s stalled: command %.2f, velocity %.0f tps, %.1f A (total %.1f A)",
+                        NAMES[i], commanded[i], velocity[i], current[i], totalAmps);
+            }
+        }
+
+        double target = 1.0 - Range.clip((totalAmps - WARN_AMPS) / (LIMIT_AMPS - WARN_AMPS), 0.0, 1.0) * (1.0 - MIN_SCALE);
+        scale = (target < scale) ? target : Math.min(target, scale + RECOVER_PER_SEC * dt);
+        if (!limiting && scale < 1.0) {
+            limiting = true;
+            limitEvents++;
+            RobotLog.ww("DriveHealth", "current limiting: total %.1f A (%.1f %.1f %.1f %.1f), scale %.2f",
+                    totalAmps, current[0], current[1], current[2], current[3], scale);
+        } else if (limiting && scale >= 1.0) {
+            limiting = false;
+            RobotLog.ii("DriveHealth", "current limiting ended: total %.1f A, peak %.1f A", totalAmps, peakAmps);
+        }
+    }
+
+    /**
+     * The power to actually send to a motor for the requested one: scaled for total current,
+     * and capped if the motor is stalled.
+     */
+    public double limit(int motor, double power) {
+        commanded[motor] = power;
+        double out = power * scale;
+        if (stalled[motor]) out = Range.clip(out, -STALL_POWER_CAP, STALL_POWER_CAP);
+        return out;
+    }
+
+    public boolean isStalled(int motor) { return stalled[motor]; }
+    public boolean isLimiting() { return limiting; }
+    public double getScale() { return scale; }
+    public double getTotalAmps() { return totalAmps; }
+    public double getVelocity(int motor) { return velocity[motor]; }
+    public double getCurrent(int motor) { return current[motor]; }
+
+    public void report(Telemetry telemetry) {
+        telemetry.addData("Drive Current", "%.1f A (peak %.1f), power x%.2f%s", totalAmps, peakAmps, scale, limiting ? " LIMITING" : "");
+        if (stalled[0] || stalled[1] || stalled[2] || stalled[3]) {
+            telemetry.addData("Drive Stall", "%s%s%s%s", stalled[0] ? "FL " : "", stalled[1] ? "FR " : "",
+                    stalled[2] ? "BL " : "", stalled[3] ? "BR" : "");
+        }
+        telemetry.addData("Drive Events", "%d stalls, %d current limits", stallEvents, limitEvents);
+    }
+}
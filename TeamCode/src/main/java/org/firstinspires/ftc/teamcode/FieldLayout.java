@@ -0,0 +1,71 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+/**
+ * Where things are on the field, in the frame RobotTeleOp and Odometry use:
+ * inches from the field corner, heading in degrees CCW. Adjust to match the field setup.
+ */
+public final class FieldLayout {
+    public static final double FIELD_SIZE_IN = 144.0;
+
+    // AprilTags: {id, x, y, heading the tag faces}
+    private static final double[][] TAGS = {
+            {20, 0.0, 0.0, 0.0},       // Example: origin, facing forward
+            {24, 144.0, 72.0, 90.0},   // Example: 12ft right, 6ft forward, facing right
+    };
+
+    // Fixed obstacles for path planning, as rectangles {x0, y0, x1, y1} in inches.
+    // The field perimeter is always treated as a wall.
+    public static final double[][] OBSTACLES = {
+    };
+
+    // The field map uploaded to the Limelight (MegaTag2) in this frame: where its origin is and the
+    // heading its +X axis points. The stock FTC map is meters from the field center.
+    private static final double LIMELIGHT_ORIGIN_X_IN = FIELD_SIZE_IN / 2.0;
+    private static final double LIMELIGHT_ORIGIN_Y_IN = FIELD_SIZE_IN / 2.0;
+    private static final double LIMELIGHT_X_HEADING_DEG = 0.0;
+    private static final double INCHES_PER_METER = 39.3701;
+
+    // Set true once TAGS holds the real tag poses and the three values above have been checked
+    // against the Limelight's map (a tag's MegaTag2 pose lands on its TAGS entry). Until then the
+    // two frames are not known to agree, and TagVision uses no MegaTag2 poses.
+    public static final boolean LIMELIGHT_MAP_MATCHES = false;
+
+    private FieldLayout() {
+    }
+
+    // A heading in this frame, as the Limelight's map measures it (for updateRobotOrientation)
+    public static double toLimelightYaw(double headingDeg) {
+        return AngleUnit.normalizeDegrees(headingDeg - LIMELIGHT_X_HEADING_DEG);
+    }
+
+    /**
+     * A pose in the Limelight's map (MegaTag2 botpose) in this frame.
+     * @param out receives x, y (inches) and heading (degrees); the rest is left alone
+     */
+    public static void fromLimelight(double xM, double yM, double yawDeg, Odometry.Pose out) {
+        double r = Math.toRadians(LIMELIGHT_X_HEADING_DEG);
+        double cos = Math.cos(r), sin = Math.sin(r);
+        out.x = LIMELIGHT_ORIGIN_X_IN + (xM * cos - yM * sin) * INCHES_PER_METER;
+        out.y = LIMELIGHT_ORIGIN_Y_IN + (xM * sin + yM * cos) * INCHES_PER_METER;
+        out.heading = AngleUnit.normalizeDegrees(yawDeg + LIMELIGHT_X_HEADING_DEG);
+    }
+
+    /**
+     * Field pose of a tag.
+     * @param out receives {x, y, heading}
+     * @return false if the tag isn't in the layout
+     */
+    public static boolean tagPose(int id, double[] out) {
+        for (double[] tag : TAGS) {
+            if ((int) tag[0] == id) {
+                out[0] = tag[1];
+                out[1] = tag[2];
+                out[2] = tag[3];
+                return true;
+            }
+        }
+        return false;
+    }
+}
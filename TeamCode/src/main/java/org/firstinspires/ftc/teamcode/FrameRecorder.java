@@ -0,0 +1,203 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import com.qualcomm.robotcore.util.RobotLog;
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * "Black box" for the webcam: keeps the last few seconds of downscaled frames in memory and
+ * writes them out as JPEGs when something interesting happens (a button, a state change, losing the tag).
+ *
+ * Add it to a VisionPortal as a processor. On the camera thread it only downscales and copies into
+ * a preallocated ring; on a trigger the ring is copied once more into a preallocated flush buffer,
+ * and a background thread does the JPEG compression and file writing.
+ * Saved to FIRST/data/capture/&lt;time&gt;-&lt;reason&gt;/ on the Control Hub.
+ */
+public class FrameRecorder implements VisionProcessor {
+    private static final int SCALE_DIVISOR = 4;        // 640x480 -> 160x120
+    private static final int RECORD_EVERY_N_FRAMES = 3; // ~10 fps from a 30 fps camera
+    private static final double HISTORY_SECONDS = 5.0;
+    private static final int JPEG_QUALITY = 80;
+
+    private final int slots;
+    private int width, height;
+    private byte[][] ring;          // RGB, width * height * 3 each
+    private long[] ringTimes;
+    private byte[][] flushFrames;   // copy of the ring being written out
+    private long[] flushTimes;
+    private int flushCount;
+    private String flushReason;
+
+    private final Mat small = new Mat();
+    private final Mat smallRgb = new Mat();
+    private Size smallSize;
+
+    private int head = 0;      // next slot to write
+    private int filled = 0;
+    private long frameCount = 0;
+
+    private volatile String pendingTrigger = null;
+    private volatile boolean flushing = false;
+    private volatile boolean writesPaused = false;
+    private volatile int savedEvents = 0;
+    private volatile int droppedTriggers = 0;
+    private final Object flushSignal = new Object();
+    private Thread writer;
+
+    public FrameRecorder() {
+        slots = (int) Math.ceil(HISTORY_SECONDS * 30.0 / RECORD_EVERY_N_FRAMES);
+    }
+
+    @Override
+    public void init(int frameWidth, int frameHeight, CameraCalibration calibration) {
+        width = frameWidth / SCALE_DIVISOR;
+        height = frameHeight / SCALE_DIVISOR;
+        smallSize = new Size(width, height);
+        int bytes = width * height * 3;
+        ring = new byte[slots][bytes];
+        ringTimes = new long[slots];
+        flushFrames = new byte[slots][bytes];
+        flushTimes = new long[slots];
+
+        writer = new Thread(this::writerLoop, "FrameRecorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Object processFrame(Mat frame, long captureTimeNanos) {
+        if (frameCount++ % RECORD_EVERY_N_FRAMES == 0) {
+            Imgproc.resize(frame, small, smallSize, 0, 0, Imgproc.INTER_AREA);
+            Mat rgb = small;
+            if (small.channels() == 4) {
+                Imgproc.cvtColor(small, smallRgb, Imgproc.COLOR_RGBA2RGB);
+                rgb = smallRgb;
+            }
+            rgb.get(0, 0, ring[head]);
+            ringTimes[head] = captureTimeNanos;
+            head = (head + 1) % slots;
+            if (filled < slots) filled++;
+        }
+
+        String reason = pendingTrigger;
+        if (reason != null) {
+            pendingTrigger = null;
+            if (flushing) {
+                droppedTriggers++; // still writing the last one
+            } else {
+                // Oldest first, so the files come out in order
+                int start = (head - filled + slots) % slots;
+                for (int i = 0; i < filled; i++) {
+                    int src = (start + i) % slots;
+                    System.arraycopy(ring[src], 0, flushFrames[i], 0, ring[src].length);
+                    flushTimes[i] = ringTimes[src];
+                }
+                flushCount = filled;
+                flushReason = reason;
+                synchronized (flushSignal) {
+                    flushing = true;
+                    flushSignal.notifyAll();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+    }
+
+    /**
+     * Save the last few seconds. Safe to call from any thread; returns immediately.
+     * @param reason short label used in the folder name, e.g. "button" or "lost"
+     */
+    public void trigger(String reason) {
+        pendingTrigger = reason;
+    }
+
+    private void writerLoop() {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] pixels = new int[width * height];
+        while (!Thread.currentThread().isInterrupted()) {
+            synchronized (flushSignal) {
+                while (!flushing) {
+                    try {
+                        flushSignal.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            try {
+                writeFlushBuffer(bitmap, pixels);
+                savedEvents++;
+            } catch (IOException e) {
+                RobotLog.ee("FrameRecorder", e, "Could not save frames");
+            }
+            flushing = false;
+        }
+    }
+
+    private void writeFlushBuffer(Bitmap bitmap, int[] pixels) throws IOException {
+        String name = String.format(Locale.US, "%tY%<tm%<td-%<tH%<tM%<tS-%s", System.currentTimeMillis(), flushReason);
+        File dir = new File(new File(AppUtil.ROBOT_DATA_DIR, "capture"), name);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+
+        try (PrintWriter index = new PrintWriter(new File(dir, "index.csv"))) {
+            index.println("file,captureTimeNanos");
+            for (int i = 0; i < flushCount; i++) {
+                waitWhilePaused();
+                byte[] rgb = flushFrames[i];
+                for (int p = 0, b = 0; p < pixels.length; p++, b += 3) {
+                    pixels[p] = 0xFF000000 | ((rgb[b] & 0xFF) << 16) | ((rgb[b + 1] & 0xFF) << 8) | (rgb[b + 2] & 0xFF);
+                }
+                bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+                String file = String.format(Locale.US, "frame_%03d.jpg", i);
+                try (OutputStream out = new FileOutputStream(new File(dir, file))) {
+                    bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                }
+                index.println(file + "," + flushTimes[i]);
+            }
+        }
+    }
+
+    /**
+     * Hold off (or resume) writing files, e.g. while the control loop is short of time.
+     * Frames keep being recorded; a save in progress just finishes later.
+     */
+    public void setWritesPaused(boolean paused) {
+        writesPaused = paused;
+    }
+
+    private void waitWhilePaused() throws IOException {
+        while (writesPaused) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while paused");
+            }
+        }
+    }
+
+    public void close() {
+        if (writer != null) writer.interrupt();
+    }
+
+    public boolean isFlushing() { return flushing; }
+    public int getSavedEvents() { return savedEvents; }
+    public int getDroppedTriggers() { return droppedTriggers; }
+}
@@ -0,0 +1,249 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.graphics.Canvas;
+import android.util.Size;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.firstinspires.ftc.vision.opencv.ColorBlobLocatorProcessor;
+import org.firstinspires.ftc.vision.opencv.ColorRange;
+import org.firstinspires.ftc.vision.opencv.ImageRegion;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.List;
+
+/**
+ * Tracks one colored game element (e.g. an artifact) with the SDK ColorBlobLocatorProcessor,
+ * only searching the part of the image where the element is expected to be.
+ *
+ * A ColorBlobLocatorProcessor's ROI is fixed when it is built, so this builds a small bank of them:
+ * a grid of half-size windows, a grid of three-quarter-size windows, and the full frame.
+ * Only one is enabled at a time. After each hit the smallest window that holds the blob plus a
+ * motion-dependent margin is enabled for the next frame; after a miss it goes back to the full frame.
+ */
+public class GameElementDetector {
+    // Camera
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+
+    // Window tiers, as a fraction of the frame. Windows in a tier overlap by half,
+    // so any box up to half the window size fits entirely inside one of them.
+    private static final double[] TIER_SIZES = {0.5, 0.75};
+
+    // Blob filtering
+    private static final int MIN_BLOB_AREA = 50;
+    private static final int MAX_BLOB_AREA = 100000;
+
+    // ROI margin around the last blob: fixed slack plus how far it could move before the next result
+    private static final double BASE_MARGIN_PX = 16.0;
+    private static final double MOTION_MARGIN_GAIN = 1.5;
+    private static final int SWITCH_LATENCY_FRAMES = 2; // a newly enabled processor sees frames from this many on
+
+    private final VisionPortal portal;
+    private final FrameCounter frameCounter = new FrameCounter();
+    private final ColorBlobLocatorProcessor fullFrame;
+    private final ColorBlobLocatorProcessor[] windows;
+    private final Rect[] windowRects;
+    private final int[] windowTier;
+
+    private ColorBlobLocatorProcessor active;
+    private Rect activeRect;
+    private long switchFrame = 0;
+    private long lastConsumedFrame = -1;
+
+    // Track state, pixels in full-frame coordinates
+    private boolean tracking = false;
+    private double centerX, centerY, width, height;
+    private double velX, velY;          // pixels per frame
+    private long trackFrame = 0;
+    private int hits = 0, misses = 0;
+
+    public GameElementDetector(HardwareMap hardwareMap, ColorRange color) {
+        fullFrame = buildLocator(color, ImageRegion.entireFrame());
+
+        int n = 0;
+        for (double size : TIER_SIZES) n += positions(size) * positions(size);
+        windows = new ColorBlobLocatorProcessor[n];
+        windowRects = new Rect[n];
+        windowTier = new int[n];
+        int w = 0;
+        for (int tier = 0; tier < TIER_SIZES.length; tier++) {
+            double size = TIER_SIZES[tier];
+            int count = positions(size);
+            int winW = (int) (FRAME_WIDTH * size), winH = (int) (FRAME_HEIGHT * size);
+            for (int row = 0; row < count; row++) {
+                for (int col = 0; col < count; col++) {
+                    int left = (count == 1) ? 0 : col * (FRAME_WIDTH - winW) / (count - 1);
+                    int top = (count == 1) ? 0 : row * (FRAME_HEIGHT - winH) / (count - 1);
+                    windowRects[w] = new Rect(left, top, winW, winH);
+                    windowTier[w] = tier;
+                    windows[w] = buildLocator(color, ImageRegion.asImageCoordinates(left, top, left + winW, top + winH));
+                    w++;
+                }
+            }
+        }
+
+        VisionPortal.Builder builder = new VisionPortal.Builder()
+                .setCamera(hardwareMap.get(WebcamName.class, "Webcam 1"))
+                .setCameraResolution(new Size(FRAME_WIDTH, FRAME_HEIGHT))
+                .enableLiveView(false)
+                .addProcessor(frameCounter)
+                .addProcessor(fullFrame);
+        for (ColorBlobLocatorProcessor window : windows) builder.addProcessor(window);
+        portal = builder.build();
+
+        for (ColorBlobLocatorProcessor window : windows) portal.setProcessorEnabled(window, false);
+        active = fullFrame;
+        activeRect = null;
+    }
+
+    // Number of window positions along one axis for a tier, stepping by half a window
+    private static int positions(double size) {
+        return (int) Math.round((1.0 - size) / (size / 2.0)) + 1;
+    }
+
+    private static ColorBlobLocatorProcessor buildLocator(ColorRange color, ImageRegion roi) {
+        return new ColorBlobLocatorProcessor.Builder()
+                .setTargetColorRange(color)
+                .setContourMode(ColorBlobLocatorProcessor.ContourMode.EXTERNAL_ONLY)
+                .setRoi(roi)
+                .setDrawContours(false)  // nothing to draw - live view is off
+                .setBoxFitColor(0)
+                .setBlurSize(5)
+                .setErodeSize(3)
+                .setDilateSize(3)
+                .build();
+    }
+
+    /**
+     * Consume the newest result, if there is one, and choose the search window for the next frame.
+     * @return true if the element is currently tracked
+     */
+    public boolean update() {
+        long frame = frameCounter.count;
+        // Nothing new, or the processor enabled last time has not finished a frame yet
+        if (frame == lastConsumedFrame || frame < switchFrame + SWITCH_LATENCY_FRAMES) return tracking;
+        lastConsumedFrame = frame;
+
+        List<ColorBlobLocatorProcessor.Blob> blobs = active.getBlobs();
+        ColorBlobLocatorProcessor.Util.filterByCriteria(
+                ColorBlobLocatorProcessor.BlobCriteria.BY_CONTOUR_AREA, MIN_BLOB_AREA, MAX_BLOB_AREA, blobs);
+
+        ColorBlobLocatorProcessor.Blob best = null;
+        for (ColorBlobLocatorProcessor.Blob b : blobs) {
+            if (best == null || b.getContourArea() > best.getContourArea()) best = b;
+        }
+
+        if (best == null) {
+            misses++;
+            tracking = false;
+            velX = velY = 0;
+            select(fullFrame, null, frame);
+            return false;
+        }
+
+        Rect box = best.getBoxFit().boundingRect();
+        double cx = box.x + box.width / 2.0, cy = box.y + box.height / 2.0;
+        if (tracking) {
+            long frames = Math.max(1, frame - trackFrame);
+            velX = (cx - centerX) / frames;
+            velY = (cy - centerY) / frames;
+        }
+        centerX = cx;
+        centerY = cy;
+        width = box.width;
+        height = box.height;
+        trackFrame = frame;
+        tracking = true;
+        hits++;
+
+        chooseWindow(frame);
+        return true;
+    }
+
+    // Smallest window that contains the predicted box plus margin; the full frame if none does
+    private void chooseWindow(long frame) {
+        double lead = SWITCH_LATENCY_FRAMES + 1;
+        double predX = centerX + velX * lead, predY = centerY + velY * lead;
+        double motion = Math.hypot(velX, velY) * lead;
+        double margin = BASE_MARGIN_PX + MOTION_MARGIN_GAIN * motion;
+        double left = predX - width / 2.0 - margin, right = predX + width / 2.0 + margin;
+        double top = predY - height / 2.0 - margin, bottom = predY + height / 2.0 + margin;
+
+        // Stay put while the current window still fits - every switch costs a couple of frames
+        if (activeRect != null && contains(activeRect, left, top, right, bottom)) return;
+
+        for (int tier = 0; tier < TIER_SIZES.length; tier++) {
+            int bestWindow = -1;
+            double bestDist = Double.MAX_VALUE;
+            for (int w = 0; w < windows.length; w++) {
+                if (windowTier[w] != tier) continue;
+                Rect r = windowRects[w];
+                if (!contains(r, left, top, right, bottom)) continue;
+                double dist = Math.hypot(r.x + r.width / 2.0 - predX, r.y + r.height / 2.0 - predY);
+                if (dist < bestDist) { bestDist = dist; bestWindow = w; }
+            }
+            if (bestWindow >= 0) {
+                select(windows[bestWindow], windowRects[bestWindow], frame);
+                return;
+            }
+        }
+        select(fullFrame, null, frame);
+    }
+
+    private static boolean contains(Rect r, double left, double top, double right, double bottom) {
+        return left >= r.x && top >= r.y && right <= r.x + r.width && bottom <= r.y + r.height;
+    }
+
+    private void select(ColorBlobLocatorProcessor next, Rect nextRect, long frame) {
+        if (next == active) return;
+        portal.setProcessorEnabled(next, true);
+        portal.setProcessorEnabled(active, false);
+        active = next;
+        activeRect = nextRect;
+        switchFrame = frame;
+    }
+
+    public void close() {
+        portal.close();
+    }
+
+    public boolean isTracking() { return tracking; }
+    public double getCenterX() { return centerX; }
+    public double getCenterY() { return centerY; }
+    public double getWidth() { return width; }
+    public double getHeight() { return height; }
+    public int getHits() { return hits; }
+    public int getMisses() { return misses; }
+    public float getFps() { return portal.getFps(); }
+
+    // Fraction of the frame currently being searched (1.0 = full frame)
+    public double getSearchFraction() {
+        if (activeRect == null) return 1.0;
+        return (double) (activeRect.width * activeRect.height) / (FRAME_WIDTH * FRAME_HEIGHT);
+    }
+
+    /**
+     * Does no image work; just counts frames so we know when a newly enabled locator has produced a result.
+     */
+    private static class FrameCounter implements VisionProcessor {
+        volatile long count = 0;
+
+        @Override
+        public void init(int width, int height, CameraCalibration calibration) {
+        }
+
+        @Override
+        public Object processFrame(Mat frame, long captureTimeNanos) {
+            count++;
+            return null;
+        }
+
+        @Override
+        public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        }
+    }
+}
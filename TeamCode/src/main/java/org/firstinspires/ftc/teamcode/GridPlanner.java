@@ -0,0 +1,441 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.Arrays;
+
+/**
+ * Any-angle (Theta*) path planner over a field occupancy grid, for getting to a standoff pose in
+ * front of a tag without driving into whatever is in between.
+ *
+ * Obstacles are kept as a bitset. rebuild() computes the distance from every cell to the nearest
+ * obstacle or wall once, and from that the cells the robot's center can't be in (inflated by the
+ * robot radius) and a soft cost for passing close to things. Planning reuses all its arrays,
+ * so a query allocates nothing; cells touched by an earlier query are told apart by a query stamp
+ * instead of being cleared.
+ *
+ * Coordinates are field inches, same frame as FieldLayout and Odometry.
+ */
+public class GridPlanner {
+    private static final double CELL_IN = 2.0;              // 72 x 72 cells on a 144" field
+    private static final double ROBOT_RADIUS_IN = 9.0;      // half the robot width, plus a little
+    private static final double SOFT_CLEARANCE_IN = 6.0;    // beyond the radius, paths pay to come closer than this
+    private static final double SOFT_COST = 1.5;            // extra cost per inch of path at zero soft clearance
+    private static final int GOAL_SNAP_CELLS = 8;           // how far to look for a free cell near a blocked goal
+    public static final int MAX_PATH_POINTS = 64;
+
+    private static final double SQRT2 = Math.sqrt(2.0);
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private final int size;                 // cells per side
+    private final int cells;
+    private final long[] occupied;          // obstacles, one bit per cell
+    private final long[] blocked;           // occupied or too close to an obstacle / wall for the robot center
+    private final float[] clearance;        // inches from cell center to the nearest obstacle or wall
+    private final float[] penalty;          // extra cost multiplier for passing through the cell
+
+    // Search state, reused between queries
+    private final float[] g;
+    private final float[] f;
+    private final int[] parent;
+    private final int[] seenStamp;          // == query: g/parent are valid for this query
+    private final int[] closedStamp;        // == query: expanded
+    private final int[] heap;
+    private final int[] heapPos;
+    private int heapSize = 0;
+    private int query = 0;
+
+    // Result
+    private final double[] pathX = new double[MAX_PATH_POINTS];
+    private final double[] pathY = new double[MAX_PATH_POINTS];
+    private final int[] pathCells = new int[MAX_PATH_POINTS];
+    private int pathLength = 0;
+    private double goalHeading = 0;
+    private int expanded = 0;
+    private double lastPlanMs = 0;
+    private final double[] tagPose = new double[3];
+
+    public GridPlanner() {
+        size = (int) Math.ceil(FieldLayout.FIELD_SIZE_IN / CELL_IN);
+        cells = size * size;
+        occupied = new long[(cells + 63) / 64];
+        blocked = new long[(cells + 63) / 64];
+        clearance = new float[cells];
+        penalty = new float[cells];
+        g = new float[cells];
+        f = new float[cells];
+        parent = new int[cells];
+        seenStamp = new int[cells];
+        closedStamp = new int[cells];
+        heap = new int[cells];
+        heapPos = new int[cells];
+
+        for (double[] r : FieldLayout.OBSTACLES) addObstacle(r[0], r[1], r[2], r[3]);
+        rebuild();
+    }
+
+    // --- Grid ---
+
+    public void clearObstacles() {
+        Arrays.fill(occupied, 0L);
+    }
+
+    /**
+     * Mark a rectangle (field inches, any corner order) as occupied. Call rebuild() when done adding.
+     */
+    public void addObstacle(double x0, double y0, double x1, double y1) {
+        int cx0 = toCell(Math.min(x0, x1)), cx1 = toCell(Math.max(x0, x1));
+        int cy0 = toCell(Math.min(y0, y1)), cy1 = toCell(Math.max(y0, y1));
+        for (int y = cy0; y <= cy1; y++) {
+            for (int x = cx0; x <= cx1; x++) set(occupied, y * size + x);
+        }
+    }
+
+    /**
+     * Recompute the clearance field, inflated obstacles and soft costs from the occupancy grid.
+     * Two-pass chamfer distance, so a few hundred microseconds rather than per-query work.
+     */
+    public void rebuild() {
+        float inf = Float.MAX_VALUE / 4;
+        for (int c = 0; c < cells; c++) clearance[c] = get(occupied, c) ? 0f : inf;
+
+        // Forward pass: neighbours above and to the left
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int c = y * size + x;
+                float d = clearance[c];
+                if (x > 0) d = Math.min(d, clearance[c - 1] + 1f);
+                if (y > 0) {
+                    d = Math.min(d, clearance[c - size] + 1f);
+                    if (x > 0) d = Math.min(d, clearance[c - size - 1] + (float) SQRT2);
+                    if (x < size - 1) d = Math.min(d, clearance[c - size + 1] + (float) SQRT2);
+                }
+                clearance[c] = d;
+            }
+        }
+        // Backward pass: neighbours below and to the right
+        for (int y = size - 1; y >= 0; y--) {
+            for (int x = size - 1; x >= 0; x--) {
+                int c = y * size + x;
+                float d = clearance[c];
+                if (x < size - 1) d = Math.min(d, clearance[c + 1] + 1f);
+                if (y < size - 1) {
+                    d = Math.min(d, clearance[c + size] + 1f);
+                    if (x < size - 1) d = Math.min(d, clearance[c + size + 1] + (float) SQRT2);
+                    if (x > 0) d = Math.min(d, clearance[c + size - 1] + (float) SQRT2);
+                }
+                clearance[c] = d;
+            }
+        }
+
+        Arrays.fill(blocked, 0L);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int c = y * size + x;
+                // Field walls: distance from the cell center to the nearest edge
+                float wall = (float) Math.min(Math.min(x, y), Math.min(size - 1 - x, size - 1 - y)) + 0.5f;
+                float inches = Math.min(clearance[c], wall) * (float) CELL_IN;
+                clearance[c] = inches;
+                if (inches < ROBOT_RADIUS_IN) set(blocked, c);
+                double soft = ROBOT_RADIUS_IN + SOFT_CLEARANCE_IN - inches;
+                penalty[c] = soft > 0 ? (float) (SOFT_COST * soft / SOFT_CLEARANCE_IN) : 0f;
+            }
+        }
+    }
+
+    public boolean isBlocked(double x, double y) {
+        return get(blocked, toCell(y) * size + toCell(x));
+    }
+
+    // Inches from this point to the nearest obstacle or wall
+    public double getClearance(double x, double y) {
+        return clearance[toCell(y) * size + toCell(x)];
+    }
+
+    // --- Planning ---
+
+    /**
+     * Plan to a point standoffIn in front of a tag from FieldLayout, ending facing the tag.
+     * @return false if the tag isn't in the layout or there is no path
+     */
+    public boolean planToTag(double startX, double startY, int tagId, double standoffIn) {
+        if (!FieldLayout.tagPose(tagId, tagPose)) {
+            pathLength = 0;
+            return false;
+        }
+        double h = Math.toRadians(tagPose[2]);
+        double goalX = tagPose[0] + standoffIn * Math.cos(h);
+        double goalY = tagPose[1] + standoffIn * Math.sin(h);
+        boolean found = plan(startX, startY, goalX, goalY);
+        goalHeading = normalize(tagPose[2] + 180.0);
+        return found;
+    }
+
+    /**
+     * Plan from start to goal (field inches). A blocked goal is moved to the nearest free cell;
+     * a blocked start (robot already close to something) is allowed, and the path first leads away from it.
+     * @return true if a path was found (of at most MAX_PATH_POINTS corners); read it with
+     *         getPathLength() / getPathX(i) / getPathY(i)
+     */
+    public boolean plan(double startX, double startY, double goalX, double goalY) {
+        long t0 = System.nanoTime();
+        pathLength = 0;
+        expanded = 0;
+        goalHeading = Math.toDegrees(Math.atan2(goalY - startY, goalX - startX));
+
+        int start = toCell(startY) * size + toCell(startX);
+        int goal = nearestFree(toCell(goalY) * size + toCell(goalX));
+        if (goal < 0) {
+            lastPlanMs = (System.nanoTime() - t0) / 1.0e6;
+            return false;
+        }
+        boolean snapped = goal != toCell(goalY) * size + toCell(goalX);
+
+        boolean found = search(start, goal) && buildPath(start, goal);
+        if (found) {
+            smooth();
+            // Exact endpoints rather than cell centers (unless the goal had to move)
+            pathX[0] = startX;
+            pathY[0] = startY;
+            if (!snapped) {
+                pathX[pathLength - 1] = goalX;
+                pathY[pathLength - 1] = goalY;
+            }
+        }
+        lastPlanMs = (System.nanoTime() - t0) / 1.0e6;
+        return found;
+    }
+
+    private boolean search(int start, int goal) {
+        if (++query == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            query = 1;
+        }
+        heapSize = 0;
+        open(start, start, 0f, goal);
+
+        while (heapSize > 0) {
+            int s = pop();
+            if (s == goal) return true;
+            closedStamp[s] = query;
+            expanded++;
+            int sx = s % size, sy = s / size;
+            int p = parent[s];
+
+            for (int k = 0; k < 8; k++) {
+                int nx = sx + DX[k], ny = sy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= size || ny >= size) continue;
+                int n = ny * size + nx;
+                if (closedStamp[n] == query || get(occupied, n)) continue;
+                // Inflated cells are only allowed on the way out, when we started inside one
+                if (get(blocked, n) && !(get(blocked, s) && clearance[n] > clearance[s])) continue;
+                // No squeezing diagonally between two blocked cells
+                if (k % 2 == 1 && (get(occupied, sy * size + nx) || get(occupied, ny * size + sx))) continue;
+
+                // Theta*: connect straight to our parent if it can see the neighbour
+                if (p != s && lineOfSight(p, n)) {
+                    open(n, p, g[p] + cost(p, n), goal);
+                } else {
+                    open(n, s, g[s] + cost(s, n), goal);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Record a cheaper way into cell n, pushing or re-keying it in the open list
+    private void open(int n, int from, float gNew, int goal) {
+        if (seenStamp[n] != query) {
+            seenStamp[n] = query;
+            g[n] = Float.MAX_VALUE;
+            heapPos[n] = -1;
+        }
+        if (gNew >= g[n]) return;
+        g[n] = gNew;
+        parent[n] = from;
+        f[n] = gNew + (float) (distance(n, goal) * CELL_IN);
+        if (heapPos[n] < 0) {
+            heap[heapSize] = n;
+            heapPos[n] = heapSize;
+            heapSize++;
+        }
+        siftUp(heapPos[n]);
+    }
+
+    // Path length in inches, weighted by the soft clearance cost at both ends
+    private float cost(int a, int b) {
+        return (float) (distance(a, b) * CELL_IN * (1.0 + 0.5 * (penalty[a] + penalty[b])));
+    }
+
+    private double distance(int a, int b) {
+        return Math.hypot(a % size - b % size, a / size - b / size);
+    }
+
+    // Grid traversal between cell centers; true if no blocked cell is crossed
+    private boolean lineOfSight(int a, int b) {
+        int x = a % size, y = a / size;
+        int x1 = b % size, y1 = b / size;
+        int dx = Math.abs(x1 - x), dy = Math.abs(y1 - y);
+        int stepX = x1 > x ? 1 : -1, stepY = y1 > y ? 1 : -1;
+        int err = dx - dy;
+        for (int n = dx + dy; n > 0; n--) {
+            int e2 = 2 * err;
+            if (e2 > -dy && e2 < dx) {
+                // Diagonal step: the two cells beside it must be free too
+                if (get(blocked, y * size + x + stepX) || get(blocked, (y + stepY) * size + x)) return false;
+                x += stepX;
+                y += stepY;
+                err += dx - dy;
+                n--;
+            } else if (e2 > -dy) {
+                x += stepX;
+                err -= dy;
+            } else {
+                y += stepY;
+                err += dx;
+            }
+            if (get(blocked, y * size + x)) return false;
+        }
+        return true;
+    }
+
+    // Walk back from the goal, then reverse in place. False (and no path) if it doesn't fit:
+    // Theta* paths are a handful of corners, so that would take a maze of obstacles
+    private boolean buildPath(int start, int goal) {
+        int c = goal;
+        int n = 0;
+        while (true) {
+            if (n == MAX_PATH_POINTS) {
+                pathLength = 0;
+                return false;
+            }
+            pathCells[n++] = c;
+            if (c == start) break;
+            c = parent[c];
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = pathCells[i];
+            pathCells[i] = pathCells[j];
+            pathCells[j] = t;
+        }
+        pathLength = n;
+        return true;
+    }
+
+    // Drop waypoints that can be skipped with a clear straight line, then convert to inches
+    private void smooth() {
+        int out = 1;
+        int anchor = 0;
+        for (int i = 1; i < pathLength; i++) {
+            boolean last = (i == pathLength - 1);
+            if (last || !lineOfSight(pathCells[anchor], pathCells[i + 1])) {
+                pathCells[out++] = pathCells[i];
+                anchor = i;
+            }
+        }
+        pathLength = out;
+        for (int i = 0; i < pathLength; i++) {
+            pathX[i] = (pathCells[i] % size + 0.5) * CELL_IN;
+            pathY[i] = (pathCells[i] / size + 0.5) * CELL_IN;
+        }
+    }
+
+    // The cell itself if free, else the closest free cell within GOAL_SNAP_CELLS, else -1
+    private int nearestFree(int c) {
+        if (!get(blocked, c)) return c;
+        int cx = c % size, cy = c / size;
+        int best = -1;
+        int bestD2 = Integer.MAX_VALUE;
+        for (int r = 1; r <= GOAL_SNAP_CELLS && best < 0; r++) {
+            for (int y = cy - r; y <= cy + r; y++) {
+                for (int x = cx - r; x <= cx + r; x++) {
+                    if (Math.max(Math.abs(x - cx), Math.abs(y - cy)) != r) continue; // ring only
+                    if (x < 0 || y < 0 || x >= size || y >= size || get(blocked, y * size + x)) continue;
+                    int d2 = (x - cx) * (x - cx) + (y - cy) * (y - cy);
+                    if (d2 < bestD2) { bestD2 = d2; best = y * size + x; }
+                }
+            }
+        }
+        return best;
+    }
+
+    // --- Binary heap on f ---
+
+    private int pop() {
+        int top = heap[0];
+        heapPos[top] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int c = heap[i];
+        while (i > 0) {
+            int up = (i - 1) / 2;
+            if (f[heap[up]] <= f[c]) break;
+            heap[i] = heap[up];
+            heapPos[heap[i]] = i;
+            i = up;
+        }
+        heap[i] = c;
+        heapPos[c] = i;
+    }
+
+    private void siftDown(int i) {
+        int c = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && f[heap[child + 1]] < f[heap[child]]) child++;
+            if (f[heap[child]] >= f[c]) break;
+            heap[i] = heap[child];
+            heapPos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = c;
+        heapPos[c] = i;
+    }
+
+    // --- Helpers ---
+
+    private int toCell(double inches) {
+        int c = (int) Math.floor(inches / CELL_IN);
+        return Math.max(0, Math.min(size - 1, c));
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static double normalize(double deg) {
+        while (deg > 180) deg -= 360;
+        while (deg < -180) deg += 360;
+        return deg;
+    }
+
+    // --- Result ---
+
+    public int getPathLength() { return pathLength; }
+    public double getPathX(int i) { return pathX[i]; }
+    public double getPathY(int i) { return pathY[i]; }
+    // Heading to finish at: facing the tag for planToTag(), else the straight-line direction
+    public double getGoalHeading() { return goalHeading; }
+    public int getExpanded() { return expanded; }
+    public double getLastPlanMs() { return lastPlanMs; }
+
+    // Total path length in inches
+    public double getPathInches() {
+        double total = 0;
+        for (int i = 1; i < pathLength; i++) total += Math.hypot(pathX[i] - pathX[i - 1], pathY[i] - pathY[i - 1]);
+        return total;
+    }
+}
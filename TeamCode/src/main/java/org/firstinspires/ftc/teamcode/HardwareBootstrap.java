@@ -0,0 +1,161 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Initializes independent devices at the same time instead of one after another, each with
+ * its own time limit, and records how long each took.
+ *
+ * Critical devices (drive motors) are waited for in awaitCritical(); non-critical ones (IMU,
+ * cameras, odometry) keep initializing in the background, and the OpMode asks isReady() before
+ * using them. A device that fails or runs out of time is simply not ready, so the OpMode falls
+ * back the same way it would if the device weren't configured.
+ */
+public class HardwareBootstrap {
+    public enum Status { PENDING, OK, FAILED, TIMED_OUT }
+
+    /** Device setup code; runs on its own thread. */
+    public interface Init {
+        void run() throws Exception;
+    }
+
+    private static class Device {
+        final String name;
+        final boolean critical;
+        final long timeoutMs;
+        final FutureTask<Void> task;
+        Status status = Status.PENDING;   // guarded by this
+        long startNanos = 0L;
+        double elapsedMs = 0;
+        String error = null;
+
+        Device(String name, boolean critical, long timeoutMs, Init init) {
+            this.name = name;
+            this.critical = critical;
+            this.timeoutMs = timeoutMs;
+            this.task = new FutureTask<>(() -> {
+                try {
+                    init.run();
+                    finish(Status.OK, null);
+                } catch (Exception e) {
+                    finish(Status.FAILED, e.toString());
+                    RobotLog.ee("HardwareBootstrap", e, "%s init failed", name);
+                }
+                return null;
+            });
+        }
+
+        synchronized void finish(Status result, String message) {
+            if (status != Status.PENDING) return; // already timed out - stays unavailable even if it finishes late
+            status = result;
+            error = message;
+            elapsedMs = (System.nanoTime() - startNanos) / 1.0e6;
+        }
+
+        synchronized Status poll() {
+            if (status == Status.PENDING && startNanos != 0L && (System.nanoTime() - startNanos) / 1.0e6 > timeoutMs) {
+                status = Status.TIMED_OUT;
+                elapsedMs = timeoutMs;
+                task.cancel(true);
+            }
+            return status;
+        }
+    }
+
+    private final List<Device> devices = new ArrayList<>();
+    private long startNanos = 0L;
+    private double criticalMs = 0;
+
+    /**
+     * Register a device. Nothing runs until start().
+     * @param critical true if the OpMode can't run without it
+     * @param timeoutMs how long it may take before it is given up on
+     */
+    public HardwareBootstrap add(String name, boolean critical, long timeoutMs, Init init) {
+        devices.add(new Device(name, critical, timeoutMs, init));
+        return this;
+    }
+
+    // Start every device's init on its own thread
+    public void start() {
+        startNanos = System.nanoTime();
+        for (Device d : devices) {
+            synchronized (d) {
+                d.startNanos = System.nanoTime();
+            }
+            Thread t = new Thread(d.task, "init-" + d.name);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Wait for the critical devices, each up to its own time limit.
+     * @return true if all of them initialized
+     */
+    public boolean awaitCritical() {
+        boolean ok = true;
+        for (Device d : devices) {
+            if (!d.critical) continue;
+            long remainingMs;
+            synchronized (d) {
+                remainingMs = d.timeoutMs - (long) ((System.nanoTime() - d.startNanos) / 1.0e6);
+            }
+            try {
+                d.task.get(Math.max(0, remainingMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // poll() below marks it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                // init failures are caught inside the task
+            }
+            if (d.poll() != Status.OK) ok = false;
+        }
+        criticalMs = (System.nanoTime() - startNanos) / 1.0e6;
+        return ok;
+    }
+
+    // True once the device has initialized successfully (and in time)
+    public boolean isReady(String name) {
+        Device d = find(name);
+        return d != null && d.poll() == Status.OK;
+    }
+
+    public Status getStatus(String name) {
+        Device d = find(name);
+        return d == null ? Status.FAILED : d.poll();
+    }
+
+    private Device find(String name) {
+        for (Device d : devices) {
+            if (d.name.equals(name)) return d;
+        }
+        return null;
+    }
+
+    // One line per device: status and init time, plus how long the critical ones held up init
+    public void report(Telemetry telemetry) {
+        telemetry.addData("Init", "critical devices ready in %.0f ms", criticalMs);
+        for (Device d : devices) {
+            Status s = d.poll();
+            synchronized (d) {
+                if (s == Status.PENDING) {
+                    telemetry.addData("  " + d.name, "starting... %.0f ms", (System.nanoTime() - d.startNanos) / 1.0e6);
+                } else if (s == Status.FAILED) {
+                    telemetry.addData("  " + d.name, "FAILED after %.0f ms: %s", d.elapsedMs, d.error);
+                } else {
+                    telemetry.addData("  " + d.name, "%s %.0f ms", s, d.elapsedMs);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.IMU;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+/**
+ * Continuous (multi-turn) heading from the Control Hub IMU.
+ * The IMU yaw wraps at +/-180 degrees; this unwraps it so a 360 degree spin reads 360, not 0.
+ * Call update() once per loop, then use getHeading() / getRate().
+ */
+public class HeadingTracker {
+    private final IMU imu;
+    private final RobotClock clock;
+
+    private double continuousHeading = 0.0; // degrees, unbounded, CCW positive
+    private double headingRate = 0.0;       // degrees per second, CCW positive
+    private double lastYaw = 0.0;
+    private long lastUpdateNanos = 0L;
+    private boolean initialized = false;
+
+    public HeadingTracker(IMU imu) {
+        this(imu, RobotClock.SYSTEM);
+    }
+
+    public HeadingTracker(IMU imu, RobotClock clock) {
+        this.imu = imu;
+        this.clock = clock;
+    }
+
+    /**
+     * Read the IMU and advance the continuous heading.
+     */
+    public void update() {
+        YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+        AngularVelocity velocity = imu.getRobotAngularVelocity(AngleUnit.DEGREES);
+        double yaw = angles.getYaw(AngleUnit.DEGREES);
+        long now = clock.nanoTime();
+        headingRate = velocity.zRotationRate;
+
+        if (!initialized) {
+            continuousHeading = yaw;
+            lastYaw = yaw;
+            lastUpdateNanos = now;
+            initialized = true;
+            return;
+        }
+
+        // Shortest-way delta is ambiguous by whole turns; pick the one closest to what the gyro rate says
+        double dtSec = (now - lastUpdateNanos) / 1.0e9;
+        double delta = AngleUnit.normalizeDegrees(yaw - lastYaw);
+        double predicted = headingRate * dtSec;
+        delta += 360.0 * Math.round((predicted - delta) / 360.0);
+
+        continuousHeading += delta;
+        lastYaw = yaw;
+        lastUpdateNanos = now;
+    }
+
+    /**
+     * Zero the continuous heading (and the IMU yaw) at the robot's current orientation.
+     */
+    public void reset() {
+        imu.resetYaw();
+        continuousHeading = 0.0;
+        lastYaw = 0.0;
+        lastUpdateNanos = clock.nanoTime();
+        initialized = true;
+    }
+
+    // Unwrapped heading in degrees; may be well outside -180 to 180 after several turns
+    public double getHeading() {
+        return continuousHeading;
+    }
+
+    // Turn rate in degrees per second, straight from the gyro
+    public double getRate() {
+        return headingRate;
+    }
+
+    /**
+     * Target for a relative turn of any size, e.g. relativeTarget(start, 360) for a full spin.
+     */
+    public static double relativeTarget(double startHeading, double deltaDeg) {
+        return startHeading + deltaDeg;
+    }
+}
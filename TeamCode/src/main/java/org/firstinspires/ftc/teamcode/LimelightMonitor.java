@@ -0,0 +1,211 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.limelightvision.LLStatus;
+import com.qualcomm.hardware.limelightvision.Limelight3A;
+import com.qualcomm.robotcore.util.Range;
+import com.qualcomm.robotcore.util.RobotLog;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * Starts the Limelight and keeps an eye on it, on its own thread (getStatus() is a blocking
+ * request to the camera, too slow for the control loop):
+ * <ul>
+ *   <li>Warm-up: until the first result arrives the state is WARMING_UP; the time from start()
+ *       to that first frame is recorded.</li>
+ *   <li>Health: camera fps, CPU and temperature from LLStatus, and how long since the last
+ *       result. The state goes STALE, DISCONNECTED or DEGRADED (running, but slow or hot) so
+ *       control code can stop trusting it, and changes are logged (RobotLog, tag "Limelight").</li>
+ *   <li>Poll rate: set a little above the frame rate the camera is really producing, instead of
+ *       a fixed 100 Hz - polling faster than frames arrive only costs robot controller time.</li>
+ * </ul>
+ */
+public class LimelightMonitor {
+    public enum State { WARMING_UP, OK, DEGRADED, STALE, DISCONNECTED }
+
+    private static final long WARMUP_POLL_MS = 20;          // how often to look for the first frame
+    private static final long CHECK_INTERVAL_MS = 100;      // staleness check rate after that
+    private static final long STATUS_INTERVAL_MS = 1000;    // LLStatus request rate
+    private static final int MAX_POLL_HZ = 100;             // SDK limit; used until the frame rate is known
+    private static final int MIN_POLL_HZ = 10;
+    private static final double POLL_MARGIN = 1.5;          // poll this much faster than frames arrive
+    private static final int POLL_HYSTERESIS_HZ = 10;       // don't retune for smaller changes
+    private static final double STALE_MS = 250.0;           // no result for this long: STALE
+    private static final double MIN_FPS = 15.0;             // slower than this: DEGRADED
+    private static final double MAX_TEMP_C = 70.0;          // hotter than this: DEGRADED (it throttles)
+    private static final double MAX_CPU_PERCENT = 90.0;
+
+    private final Limelight3A limelight;
+    private final RobotClock clock;
+
+    private final Object lock = new Object();
+    private double fps = 0.0, cpu = 0.0, tempC = 0.0;     // guarded by lock; from the last LLStatus
+    private int pipeline = -1;                            // guarded by lock
+    private volatile double stalenessMs = Double.POSITIVE_INFINITY;
+    private volatile double timeToFirstFrameMs = -1;
+    private volatile int pollHz = MAX_POLL_HZ;
+    private volatile State state = State.WARMING_UP;
+    private volatile int statusFailures = 0;
+
+    private long startNanos = 0L;
+    private Thread monitorThread;
+    private volatile boolean running = false;
+
+    public LimelightMonitor(Limelight3A limelight, RobotClock clock) {
+        this.limelight = limelight;
+        this.clock = clock;
+    }
+
+    public LimelightMonitor(Limelight3A limelight) {
+        this(limelight, RobotClock.SYSTEM);
+    }
+
+    // Start the camera on a pipeline and begin watching it
+    public void start(int pipelineIndex) {
+        if (running) return;
+        limelight.setPollRateHz(MAX_POLL_HZ);
+        limelight.pipelineSwitch(pipelineIndex);
+        limelight.start();
+        startNanos = clock.nanoTime();
+        running = true;
+        monitorThread = new Thread(this::monitorLoop, "Limelight");
+        monitorThread.setDaemon(true);
+        monitorThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            try {
+                monitorThread.join(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            monitorThread = null;
+        }
+        limelight.stop();
+    }
+
+    private void monitorLoop() {
+        long nextStatusNanos = 0L;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long now = clock.nanoTime();
+            if (timeToFirstFrameMs < 0 && limelight.getLatestResult() != null) {
+                timeToFirstFrameMs = (now - startNanos) / 1.0e6;
+                RobotLog.ii("Limelight", "first frame after %.0f ms", timeToFirstFrameMs);
+            }
+            boolean statusDue = now >= nextStatusNanos;
+            if (statusDue) nextStatusNanos = now + STATUS_INTERVAL_MS * 1000000L;
+            check(statusDue);
+            try {
+                Thread.sleep(timeToFirstFrameMs < 0 ? WARMUP_POLL_MS : CHECK_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Connection and staleness every time; the (slower) LLStatus request only when asked
+    private void check(boolean readStatus) {
+        boolean connected;
+        LLStatus status;
+        try {
+            connected = limelight.isConnected();
+            stalenessMs = connected ? limelight.getTimeSinceLastUpdate() : Double.POSITIVE_INFINITY;
+            status = (connected && readStatus) ? limelight.getStatus() : null;
+            if (status != null) {
+                synchronized (lock) {
+                    fps = status.getFps();
+                    cpu = status.getCpu();
+                    tempC = status.getTemp();
+                    pipeline = status.getPipelineIndex();
+                }
+            }
+        } catch (RuntimeException e) {
+            // USB hiccup - count it, try again next time
+            statusFailures++;
+            return;
+        }
+        if (status != null && timeToFirstFrameMs >= 0) adaptPollRate();
+        setState(classify(connected));
+    }
+
+    private State classify(boolean connected) {
+        if (!connected) return State.DISCONNECTED;
+        if (timeToFirstFrameMs < 0) return State.WARMING_UP;
+        if (stalenessMs > STALE_MS) return State.STALE;
+        synchronized (lock) {
+            if (fps < MIN_FPS || tempC > MAX_TEMP_C || cpu > MAX_CPU_PERCENT) return State.DEGRADED;
+        }
+        return State.OK;
+    }
+
+    private void setState(State next) {
+        if (next == state) return;
+        synchronized (lock) {
+            RobotLog.ii("Limelight", "%s -> %s: %.0f fps, cpu %.0f%%, %.0f C, last result %.0f ms ago",
+                    state, next, fps, cpu, tempC, stalenessMs);
+        }
+        state = next;
+    }
+
+    private void adaptPollRate() {
+        double cameraFps;
+        synchronized (lock) {
+            cameraFps = fps;
+        }
+        if (cameraFps <= 0) return;
+        int target = (int) Range.clip(Math.ceil(cameraFps * POLL_MARGIN), MIN_POLL_HZ, MAX_POLL_HZ);
+        if (Math.abs(target - pollHz) < POLL_HYSTERESIS_HZ) return;
+        limelight.setPollRateHz(target);
+        pollHz = target;
+    }
+
+    /**
+     * Block until the first frame arrives (for OpModes that set up one device after another).
+     * @return false if none came in time
+     */
+    public boolean awaitFirstFrame(long timeoutMs) {
+        long deadline = clock.nanoTime() + timeoutMs * 1000000L;
+        while (timeToFirstFrameMs < 0 && clock.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            clock.sleep(WARMUP_POLL_MS);
+        }
+        return timeToFirstFrameMs >= 0;
+    }
+
+    public State getState() { return state; }
+
+    // Worth reading: running and producing frames, even if slowly
+    public boolean isUsable() {
+        State s = state;
+        return s == State.OK || s == State.DEGRADED;
+    }
+
+    // Milliseconds from start() to the first result, or -1 if there hasn't been one yet
+    public double getTimeToFirstFrameMs() { return timeToFirstFrameMs; }
+
+    public double getWarmupElapsedMs() {
+        return startNanos == 0L ? 0.0 : (clock.nanoTime() - startNanos) / 1.0e6;
+    }
+
+    public int getPollHz() { return pollHz; }
+    public double getStalenessMs() { return stalenessMs; }
+
+    public double getFps() {
+        synchronized (lock) {
+            return fps;
+        }
+    }
+
+    public void report(Telemetry telemetry) {
+        if (state == State.WARMING_UP) {
+            telemetry.addData("Limelight", "warming up (%.1f s)", getWarmupElapsedMs() / 1000.0);
+            return;
+        }
+        synchronized (lock) {
+            telemetry.addData("Limelight", "%s: %.0f fps (polling %d Hz), cpu %.0f%%, %.0f C, pipeline %d, first frame %.1f s",
+                    state, fps, pollHz, cpu, tempC, pipeline, timeToFirstFrameMs / 1000.0);
+        }
+        if (statusFailures > 0) telemetry.addData("Limelight Errors", "%d status reads failed", statusFailures);
+    }
+}
@@ -0,0 +1,263 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.content.Context;
+import com.qualcomm.robotcore.util.WebHandlerManager;
+import fi.iki.elonen.NanoHTTPD;
+import org.firstinspires.ftc.ftccommon.external.WebHandlerRegistrar;
+import org.firstinspires.ftc.robotcore.internal.webserver.WebHandler;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streams per-loop data (pose, tag detections, motor powers, loop time) to a browser on the
+ * laptop through the Robot Controller's web server: open http://192.168.43.1:8080/loop while
+ * connected to the robot. Telemetry only gets a few updates a second; this gets every loop.
+ *
+ * The OpMode fills in a Sample and calls publish() once per loop. Samples go into a fixed ring
+ * shared with the web server threads without locks, so the control thread never waits on the
+ * network: a client that falls behind just skips what has been overwritten. Each client picks
+ * its own rate (/loop/stream?hz=50) and gets a header then fixed-size little-endian records:
+ * <pre>
+ *   header:  "LOOP"  u16 version  u16 record size
+ *   record:  u32 sequence  f32 time (s)  f32 loop time (ms)
+ *            f32 x  f32 y  f32 heading   (inches, degrees; NaN if no pose)
+ *            f32 power x4                (frontLeft, frontRight, backLeft, backRight)
+ *            u8 tag count  3 pad bytes
+ *            x4: i16 tag id  2 pad bytes  f32 bearing (deg)  f32 range (inches, 0 if unknown)
+ * </pre>
+ */
+public class LoopStream {
+    public static final int MAX_TAGS = 4;
+
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 44 + MAX_TAGS * 12;
+    private static final int CAPACITY = 256;          // slots; about 2.5 s of loops at 100 Hz
+    private static final int WORDS = 10 + MAX_TAGS * 3; // longs per slot
+    private static final double DEFAULT_HZ = 100.0;
+    private static final long POLL_MS = 5;             // stream threads wait this long between checks for new data
+
+    /** One loop's data. The OpMode owns one, refills it every loop, and passes it to publish(). */
+    public static class Sample {
+        public double loopMs;
+        public boolean hasPose;
+        public double x, y, heading;                             // inches, degrees
+        public final double[] power = new double[4];            // frontLeft, frontRight, backLeft, backRight
+        public int tagCount;
+        public final int[] tagId = new int[MAX_TAGS];
+        public final double[] tagBearing = new double[MAX_TAGS]; // deg, positive = right of center
+        public final double[] tagRange = new double[MAX_TAGS];   // inches, 0 if unknown
+
+        public void setPowers(double frontLeft, double frontRight, double backLeft, double backRight) {
+            power[0] = frontLeft;
+            power[1] = frontRight;
+            power[2] = backLeft;
+            power[3] = backRight;
+        }
+
+        // Add a tag; the first MAX_TAGS are kept
+        public void addTag(int id, double bearingDeg, double rangeIn) {
+            if (tagCount >= MAX_TAGS) return;
+            tagId[tagCount] = id;
+            tagBearing[tagCount] = bearingDeg;
+            tagRange[tagCount] = rangeIn;
+            tagCount++;
+        }
+    }
+
+    // Ring of slots. Every word is an atomic (doubles stored as raw bits), and each slot's stamp is
+    // -1 while it is being written, then its sequence number, so a reader can tell a torn copy.
+    private static final AtomicLongArray data = new AtomicLongArray(CAPACITY * WORDS);
+    private static final AtomicLongArray stamps = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong head = new AtomicLong(0);   // next sequence number to write
+    private static final AtomicInteger clients = new AtomicInteger(0);
+    private static final long epochNanos = System.nanoTime();
+
+    private LoopStream() {
+    }
+
+    /**
+     * Add one loop's data to the stream. Call from the OpMode thread only. Never blocks, never
+     * allocates, and does nothing when no browser is watching.
+     */
+    public static void publish(Sample s) {
+        if (clients.get() == 0) return;
+        long seq = head.get();
+        int slot = (int) (seq % CAPACITY);
+        int base = slot * WORDS;
+        stamps.set(slot, -1L);
+        data.set(base, System.nanoTime() - epochNanos);
+        putDouble(base + 1, s.loopMs);
+        putDouble(base + 2, s.hasPose ? s.x : Double.NaN);
+        putDouble(base + 3, s.hasPose ? s.y : Double.NaN);
+        putDouble(base + 4, s.hasPose ? s.heading : Double.NaN);
+        for (int i = 0; i < 4; i++) putDouble(base + 5 + i, s.power[i]);
+        int tags = Math.min(s.tagCount, MAX_TAGS);
+        data.set(base + 9, tags);
+        for (int i = 0; i < tags; i++) {
+            data.set(base + 10 + i * 3, s.tagId[i]);
+            putDouble(base + 11 + i * 3, s.tagBearing[i]);
+            putDouble(base + 12 + i * 3, s.tagRange[i]);
+        }
+        stamps.set(slot, seq);
+        head.set(seq + 1);
+    }
+
+    private static void putDouble(int index, double value) {
+        data.set(index, Double.doubleToRawLongBits(value));
+    }
+
+    @WebHandlerRegistrar
+    public static void attachWebHandlers(Context context, WebHandlerManager manager) {
+        manager.register("/loop", session -> NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "text/html", PAGE));
+        manager.register("/loop/stream", new StreamHandler());
+    }
+
+    private static class StreamHandler implements WebHandler {
+        @Override
+        public NanoHTTPD.Response getResponse(NanoHTTPD.IHTTPSession session) {
+            double hz = DEFAULT_HZ;
+            String param = session.getParms().get("hz");
+            if (param != null) {
+                try {
+                    hz = Double.parseDouble(param);
+                } catch (NumberFormatException e) {
+                    return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "text/plain", "hz must be a number");
+                }
+            }
+            NanoHTTPD.Response response = NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK,
+                    "application/octet-stream", new ClientStream(hz));
+            response.addHeader("Cache-Control", "no-cache");
+            response.setGzipEncoding(false);
+            return response;
+        }
+    }
+
+    /**
+     * One browser's view of the ring, read by the web server thread serving it. Blocks (polling)
+     * until there is a record to send; skips ahead when it has been lapped.
+     */
+    private static class ClientStream extends InputStream {
+        private final long intervalNanos;
+        private final ByteBuffer out = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        private final long[] words = new long[WORDS];
+        private long next;
+        private long lastSentNanos = Long.MIN_VALUE;
+        private boolean closed = false;
+
+        ClientStream(double hz) {
+            intervalNanos = hz > 0 ? (long) (1.0e9 / hz) : 0L;
+            clients.incrementAndGet();
+            next = head.get();
+            out.put((byte) 'L').put((byte) 'O').put((byte) 'O').put((byte) 'P');
+            out.putShort((short) VERSION).putShort((short) RECORD_BYTES);
+            out.flip();
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            while (!out.hasRemaining()) {
+                if (closed || Thread.currentThread().isInterrupted()) return -1;
+                out.clear();
+                fill();
+                out.flip();
+                if (!out.hasRemaining()) {
+                    try {
+                        Thread.sleep(POLL_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return -1;
+                    }
+                }
+            }
+            int n = Math.min(len, out.remaining());
+            out.get(b, off, n);
+            return n;
+        }
+
+        // Encode whatever new records there are (rate permitting) into out
+        private void fill() {
+            long newest = head.get();
+            if (newest - next > CAPACITY - 1) next = newest - 1; // lapped - jump to the latest
+            while (next < newest && out.remaining() >= RECORD_BYTES) {
+                long seq = next++;
+                if (!copy(seq)) continue;
+                if (lastSentNanos != Long.MIN_VALUE && words[0] - lastSentNanos < intervalNanos) continue;
+                lastSentNanos = words[0];
+                encode(seq);
+            }
+        }
+
+        // Copy one slot; false if it was overwritten before or while we read it
+        private boolean copy(long seq) {
+            int slot = (int) (seq % CAPACITY);
+            if (stamps.get(slot) != seq) return false;
+            int base = slot * WORDS;
+            for (int i = 0; i < WORDS; i++) words[i] = data.get(base + i);
+            return stamps.get(slot) == seq;
+        }
+
+        private void encode(long seq) {
+            out.putInt((int) seq);
+            out.putFloat((float) (words[0] / 1.0e9));
+            for (int i = 1; i <= 8; i++) out.putFloat((float) Double.longBitsToDouble(words[i]));
+            int tags = (int) words[9];
+            out.put((byte) tags).put((byte) 0).putShort((short) 0);
+            for (int i = 0; i < MAX_TAGS; i++) {
+                boolean used = i < tags;
+                out.putShort((short) (used ? words[10 + i * 3] : -1)).putShort((short) 0);
+                out.putFloat(used ? (float) Double.longBitsToDouble(words[11 + i * 3]) : 0f);
+                out.putFloat(used ? (float) Double.longBitsToDouble(words[12 + i * 3]) : 0f);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            clients.decrementAndGet();
+        }
+    }
+
+    // Viewer page: decodes the stream and shows the latest values and a loop-time trace
+    private static final String PAGE =
+            "<!DOCTYPE html><html><head><title>Loop Stream</title><style>" +
+            "body{font-family:monospace;margin:1em}td{padding:0 1em 0 0}canvas{border:1px solid #888}" +
+            "</style></head><body><h3>Loop Stream</h3>" +
+            "Rate (Hz): <input id=hz value=100 size=4> <button onclick=start()>Connect</button> <span id=st></span>" +
+            "<table id=t></table><canvas id=c width=800 height=150></canvas>" +
+            "<script>\n" +
+            "var reader=null,ms=[],last=null;\n" +
+            "function start(){if(reader)reader.cancel();\n" +
+            " fetch('/loop/stream?hz='+document.getElementById('hz').value).then(function(r){reader=r.body.getReader();read(new Uint8Array(0),false);});}\n" +
+            "function read(buf,gotHeader){reader.read().then(function(res){if(res.done){st('disconnected');return;}\n" +
+            " var b=new Uint8Array(buf.length+res.value.length);b.set(buf);b.set(res.value,buf.length);\n" +
+            " var v=new DataView(b.buffer),p=0,size=" + RECORD_BYTES + ";\n" +
+            " if(!gotHeader){if(b.length<8){read(b,false);return;}size=v.getUint16(6,true);p=8;gotHeader=true;st('connected');}\n" +
+            " while(b.length-p>=size){record(v,p);p+=size;}\n" +
+            " draw();read(b.slice(p),gotHeader);});}\n" +
+            "function record(v,p){var f=function(o){return v.getFloat32(p+o,true);};\n" +
+            " var r={seq:v.getUint32(p,true),t:f(4),loopMs:f(8),x:f(12),y:f(16),h:f(20),pw:[f(24),f(28),f(32),f(36)],tags:[]};\n" +
+            " for(var i=0;i<v.getUint8(p+40);i++){var q=p+44+i*12;r.tags.push(v.getInt16(q,true)+' @ '+v.getFloat32(q+4,true).toFixed(1)+' deg, '+v.getFloat32(q+8,true).toFixed(1)+' in');}\n" +
+            " ms.push(r.loopMs);if(ms.length>400)ms.shift();last=r;}\n" +
+            "function draw(){if(!last)return;var r=last;\n" +
+            " document.getElementById('t').innerHTML='<tr><td>Sequence</td><td>'+r.seq+'</td></tr><tr><td>Time</td><td>'+r.t.toFixed(3)+' s</td></tr>'+\n" +
+            "  '<tr><td>Loop</td><td>'+r.loopMs.toFixed(1)+' ms</td></tr><tr><td>Pose</td><td>'+(isNaN(r.x)?'unknown':r.x.toFixed(1)+', '+r.y.toFixed(1)+' in, '+r.h.toFixed(1)+' deg')+'</td></tr>'+\n" +
+            "  '<tr><td>Powers</td><td>'+r.pw.map(function(x){return x.toFixed(2);}).join(' ')+'</td></tr><tr><td>Tags</td><td>'+(r.tags.join('<br>')||'none')+'</td></tr>';\n" +
+            " var c=document.getElementById('c').getContext('2d');c.clearRect(0,0,800,150);c.beginPath();\n" +
+            " for(var i=0;i<ms.length;i++){var y=150-Math.min(ms[i],75)*2;if(i==0)c.moveTo(i*2,y);else c.lineTo(i*2,y);}c.stroke();}\n" +
+            "function st(s){document.getElementById('st').textContent=s;}\n" +
+            "start();\n" +
+            "</script></body></html>";
+}
@@ -0,0 +1,145 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * Watches the control loop period against a budget and sheds load when it keeps running long
+ * (GC pauses, slow I2C reads, too much telemetry). Call tick() once at the top of every loop.
+ *
+ * Sustained overruns step the level up one at a time, as far as NO_VISION_EXTRAS; a sustained
+ * run of cycles with headroom steps it back down. Only badly missed deadlines (SEVERE_FACTOR
+ * times the budget, several in a row) stop the motors, going straight to SAFE_STOP.
+ * The OpMode decides what each level means for it through the should...() methods.
+ */
+public class LoopWatchdog {
+    public enum Level {
+        NORMAL,             // everything on
+        REDUCED_TELEMETRY,  // send telemetry every few loops
+        NO_LOGGING,         // also hold off background log/frame writes
+        NO_VISION_EXTRAS,   // also skip non-critical vision work (recording, camera tuning)
+        SAFE_STOP           // motors off until the loop recovers
+    }
+
+    private static final Level[] LEVELS = Level.values();   // values() copies the array every call
+
+    private static final int OVERRUNS_TO_STEP_UP = 5;       // consecutive cycles over budget
+    private static final Level MAX_SHED_LEVEL = Level.NO_VISION_EXTRAS;  // highest level overruns alone reach
+    private static final int SEVERE_TO_STOP = 3;            // consecutive cycles over SEVERE_FACTOR * budget
+    private static final double SEVERE_FACTOR = 4.0;
+    private static final double HEADROOM_FACTOR = 0.75;     // "has headroom" = under this fraction of budget
+    private static final double RESTORE_AFTER_SEC = 1.0;    // of continuous headroom, per level
+    private static final double LEVEL_HOLD_SEC = 0.25;      // minimum time between step-ups
+    private static final int REDUCED_TELEMETRY_EVERY = 5;   // loops per telemetry update when reduced
+    private static final double AVERAGE_ALPHA = 0.05;
+
+    private final long budgetNanos;
+    private final RobotClock clock;
+    private final long[] nanosAtLevel = new long[LEVELS.length];
+    private final int[] entriesToLevel = new int[LEVELS.length];
+
+    private Level level = Level.NORMAL;
+    private long lastTickNanos = 0L;
+    private long levelChangeNanos = 0L;
+    private long headroomSinceNanos = 0L;
+    private long lastSevereNanos = 0L;
+    private int overruns = 0, severe = 0;
+    private long cycles = 0;
+    private double lastCycleMs = 0, averageCycleMs = 0, worstCycleMs = 0;
+
+    /**
+     * @param budgetMs the loop period we expect to meet, milliseconds (including any sleep in the loop)
+     */
+    public LoopWatchdog(double budgetMs) {
+        this(budgetMs, RobotClock.SYSTEM);
+    }
+
+    public LoopWatchdog(double budgetMs, RobotClock clock) {
+        budgetNanos = (long) (budgetMs * 1.0e6);
+        this.clock = clock;
+    }
+
+    /**
+     * Mark the start of a loop cycle and update the level.
+     * @return the level to run this cycle at
+     */
+    public Level tick() {
+        long now = clock.nanoTime();
+        if (lastTickNanos == 0L) {
+            lastTickNanos = levelChangeNanos = headroomSinceNanos = lastSevereNanos = now;
+            return level;
+        }
+        long cycle = now - lastTickNanos;
+        lastTickNanos = now;
+        nanosAtLevel[level.ordinal()] += cycle;
+        cycles++;
+
+        lastCycleMs = cycle / 1.0e6;
+        averageCycleMs = (cycles == 1) ? lastCycleMs : averageCycleMs + AVERAGE_ALPHA * (lastCycleMs - averageCycleMs);
+        if (lastCycleMs > worstCycleMs) worstCycleMs = lastCycleMs;
+
+        overruns = (cycle > budgetNanos) ? overruns + 1 : 0;
+        severe = (cycle > budgetNanos * SEVERE_FACTOR) ? severe + 1 : 0;
+        if (cycle > budgetNanos * HEADROOM_FACTOR) headroomSinceNanos = now;
+        if (severe > 0) lastSevereNanos = now;
+
+        if (severe >= SEVERE_TO_STOP) {
+            setLevel(Level.SAFE_STOP, now);
+        } else if (level == Level.SAFE_STOP && now - lastSevereNanos >= RESTORE_AFTER_SEC * 1.0e9) {
+            // Out of the severe range, even if still a little over budget: drive again, shedding the rest
+            setLevel(MAX_SHED_LEVEL, now);
+        } else if (overruns >= OVERRUNS_TO_STEP_UP && level.ordinal() < MAX_SHED_LEVEL.ordinal()
+                && now - levelChangeNanos >= LEVEL_HOLD_SEC * 1.0e9) {
+            setLevel(LEVELS[level.ordinal() + 1], now);
+            overruns = 0;
+        } else if (level != Level.NORMAL && now - headroomSinceNanos >= RESTORE_AFTER_SEC * 1.0e9
+                && now - levelChangeNanos >= RESTORE_AFTER_SEC * 1.0e9) {
+            setLevel(LEVELS[level.ordinal() - 1], now);
+        }
+        return level;
+    }
+
+    private void setLevel(Level next, long now) {
+        if (next == level) return;
+        level = next;
+        levelChangeNanos = now;
+        entriesToLevel[next.ordinal()]++;
+    }
+
+    public Level getLevel() { return level; }
+
+    // Send telemetry this cycle? (every cycle normally, every few when shedding load)
+    public boolean shouldSendTelemetry() {
+        return level == Level.NORMAL || cycles % REDUCED_TELEMETRY_EVERY == 0;
+    }
+
+    public boolean shouldLog() {
+        return level.ordinal() < Level.NO_LOGGING.ordinal();
+    }
+
+    public boolean shouldRunVisionExtras() {
+        return level.ordinal() < Level.NO_VISION_EXTRAS.ordinal();
+    }
+
+    public boolean isSafeStop() {
+        return level == Level.SAFE_STOP;
+    }
+
+    public double getLastCycleMs() { return lastCycleMs; }
+    public double getAverageCycleMs() { return averageCycleMs; }
+    public double getWorstCycleMs() { return worstCycleMs; }
+
+    // Total time spent at a level so far, seconds
+    public double getSecondsAt(Level l) {
+        return nanosAtLevel[l.ordinal()] / 1.0e9;
+    }
+
+    // Add a short summary: loop times, current level, and time spent at each level that was used
+    public void report(Telemetry telemetry) {
+        telemetry.addData("Loop", "%.1f ms (avg %.1f, worst %.1f), %s", lastCycleMs, averageCycleMs, worstCycleMs, level);
+        for (Level l : LEVELS) {
+            if (l != Level.NORMAL && nanosAtLevel[l.ordinal()] > 0) {
+                telemetry.addData("  " + l, "%.1f s, entered %d times", getSecondsAt(l), entriesToLevel[l.ordinal()]);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Mecanum drive kinematics, both ways, for an X roller pattern (rollers on top form an X seen
+ * from above). Robot frame: +x forward, +y left, turning CCW positive. Wheel order is FL, FR,
+ * BL, BR, as in DriveHealth and VelocityDrive. Any length unit works as long as it is the same
+ * everywhere (TeamCode uses inches).
+ * <ul>
+ *   <li>inverse(): chassis (vx, vy, omega) to the four wheel surface speeds.</li>
+ *   <li>desaturate(): scale all four down together so none is over the limit - the chassis
+ *       keeps its direction and turn-to-drive ratio, only slower.</li>
+ *   <li>forward() / update(): wheel travel back to chassis motion, and a dead-reckoned pose.</li>
+ * </ul>
+ * Nothing allocates; callers pass in the arrays to fill.
+ */
+public class MecanumKinematics {
+    private final double k;  // (track width + wheel base) / 2: wheel speed per rad/s of turn
+
+    // Dead reckoning
+    private final double[] lastWheels = new double[4];
+    private final double[] delta = new double[4];
+    private final double[] motion = new double[3];
+    private boolean haveWheels = false;
+    private double x = 0, y = 0, heading = 0;  // heading in degrees
+
+    /**
+     * @param trackWidth left to right wheel centers
+     * @param wheelBase front to back wheel centers
+     */
+    public MecanumKinematics(double trackWidth, double wheelBase) {
+        this.k = (trackWidth + wheelBase) / 2.0;
+    }
+
+    /**
+     * Chassis speeds to wheel speeds.
+     * @param degPerSec turn rate, CCW positive
+     * @param out receives FL, FR, BL, BR
+     */
+    public void inverse(double vx, double vy, double degPerSec, double[] out) {
+        double turn = k * Math.toRadians(degPerSec);
+        out[0] = vx - vy - turn;
+        out[1] = vx + vy + turn;
+        out[2] = vx + vy - turn;
+        out[3] = vx - vy + turn;
+    }
+
+    // Turn rate (deg/s) that moves the wheels at the given surface speed
+    public double turnRateFor(double wheelSpeed) {
+        return Math.toDegrees(wheelSpeed / k);
+    }
+
+    /**
+     * Chassis motion from wheel motion (speeds or distances).
+     * @param out receives vx, vy, and turn in degrees (per second, or total)
+     */
+    public void forward(double[] wheels, double[] out) {
+        out[0] = (wheels[0] + wheels[1] + wheels[2] + wheels[3]) / 4.0;
+        out[1] = (-wheels[0] + wheels[1] + wheels[2] - wheels[3]) / 4.0;
+        out[2] = Math.toDegrees((-wheels[0] + wheels[1] - wheels[2] + wheels[3]) / (4.0 * k));
+    }
+
+    // Scale the wheel speeds down together so the largest is at most max
+    public static void desaturate(double[] wheels, double max) {
+        double largest = 0;
+        for (double w : wheels) largest = Math.max(largest, Math.abs(w));
+        if (largest <= max) return;
+        for (int i = 0; i < wheels.length; i++) wheels[i] *= max / largest;
+    }
+
+    // Open-loop power for a wheel speed: kV per unit of speed plus kS to get it moving
+    public static double feedforward(double speed, double kV, double kS) {
+        if (speed == 0) return 0;
+        return kV * speed + Math.signum(speed) * kS;
+    }
+
+    /**
+     * Dead-reckon from the wheel encoders. Call every loop.
+     * @param wheelDistances total travel of each wheel so far (FL, FR, BL, BR), any origin
+     * @param headingDeg heading from the IMU, or NaN to use the wheels' own estimate
+     */
+    public void update(double[] wheelDistances, double headingDeg) {
+        if (!haveWheels) {
+            System.arraycopy(wheelDistances, 0, lastWheels, 0, 4);
+            haveWheels = true;
+            if (!Double.isNaN(headingDeg)) heading = headingDeg;
+            return;
+        }
+        for (int i = 0; i < 4; i++) {
+            delta[i] = wheelDistances[i] - lastWheels[i];
+            lastWheels[i] = wheelDistances[i];
+        }
+        forward(delta, motion);
+        double newHeading = Double.isNaN(headingDeg) ? heading + motion[2] : headingDeg;
+        // Rotate by the heading halfway through the step
+        double mid = Math.toRadians((heading + newHeading) / 2.0);
+        double cos = Math.cos(mid), sin = Math.sin(mid);
+        x += motion[0] * cos - motion[1] * sin;
+        y += motion[0] * sin + motion[1] * cos;
+        heading = newHeading;
+    }
+
+    public void setPose(double x, double y, double headingDeg) {
+        this.x = x;
+        this.y = y;
+        this.heading = headingDeg;
+    }
+
+    public double getX() { return x; }
+    public double getY() { return y; }
+    public double getHeading() { return heading; }
+}
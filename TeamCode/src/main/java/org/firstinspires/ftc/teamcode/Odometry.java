@@ -0,0 +1,242 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+import com.qualcomm.hardware.gobilda.GoBildaPinpointDriver;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
+
+/**
+ * Dead-wheel odometry from either a goBILDA Pinpoint ("pinpoint") or an OctoQuad MK2 ("octoquad").
+ * The device is polled on its own thread as fast as the bus allows; the OpMode reads
+ * pose/velocity snapshots in field coordinates (inches, degrees CCW, same frame as RobotTeleOp).
+ */
+public class Odometry {
+    public enum Source { PINPOINT, OCTOQUAD }
+
+    /** Robot pose and velocity in the field frame. Reused: callers own one and copy into it. */
+    public static class Pose {
+        public double x, y, heading;      // inches, inches, degrees (-180 to 180)
+        public double vx, vy, headingRate; // inches/sec, inches/sec, degrees/sec
+        public long timestampNanos;       // System.nanoTime() of the reading, 0 if none yet
+
+        public void copyFrom(Pose other) {
+            x = other.x; y = other.y; heading = other.heading;
+            vx = other.vx; vy = other.vy; headingRate = other.headingRate;
+            timestampNanos = other.timestampNanos;
+        }
+    }
+
+    // Pinpoint pod setup (from SensorGoBildaPinpoint) - adjust to match the robot
+    private static final double PINPOINT_X_OFFSET_MM = -84.0;
+    private static final double PINPOINT_Y_OFFSET_MM = -168.0;
+
+    // OctoQuad setup (from SensorOctoQuadLocalization) - adjust to match the robot
+    private static final int OCTOQUAD_PORT_X = 0;
+    private static final int OCTOQUAD_PORT_Y = 1;
+    private static final float OCTOQUAD_TICKS_PER_MM = 19.89f; // goBILDA 4-Bar Odometry Pod
+    private static final float OCTOQUAD_TCP_OFFSET_X_MM = 147.0f;
+    private static final float OCTOQUAD_TCP_OFFSET_Y_MM = -158.0f;
+    private static final double MM_PER_INCH = 25.4;
+
+    private final Source source;
+    private final GoBildaPinpointDriver pinpoint;
+    private final OctoQuad octoquad;
+    private final OctoQuad.LocalizerDataBlock localizer = new OctoQuad.LocalizerDataBlock();
+
+    // Written only by the poll thread, read by the OpMode under the same lock
+    private final Pose shared = new Pose();
+    private final Object lock = new Object();
+
+    // Device-frame reading in progress (poll thread only)
+    private double readX, readY, readHeading, readVx, readVy, readHeadingRate;
+    // Device-frame reading behind the published pose (under lock)
+    private double rawX, rawY, rawHeading, rawVx, rawVy, rawHeadingRate;
+
+    // Field-from-device transform; changed by setFieldPose
+    private double originX = 0.0, originY = 0.0, originHeading = 0.0;
+
+    private Thread pollThread;
+    private volatile boolean running = false;
+    private volatile int badReads = 0;
+    private volatile double sampleRateHz = 0.0;
+
+    private Odometry(GoBildaPinpointDriver pinpoint, OctoQuad octoquad) {
+        this.pinpoint = pinpoint;
+        this.octoquad = octoquad;
+        this.source = (pinpoint != null) ? Source.PINPOINT : Source.OCTOQUAD;
+    }
+
+    /**
+     * Find a Pinpoint or an OctoQuad in the configuration and set it up.
+     * @return the odometry, or null if neither device is configured
+     */
+    public static Odometry create(HardwareMap hardwareMap) {
+        GoBildaPinpointDriver pinpoint = hardwareMap.tryGet(GoBildaPinpointDriver.class, "pinpoint");
+        if (pinpoint != null) {
+            pinpoint.setOffsets(PINPOINT_X_OFFSET_MM, PINPOINT_Y_OFFSET_MM, DistanceUnit.MM);
+            pinpoint.setEncoderResolution(GoBildaPinpointDriver.GoBildaOdometryPods.goBILDA_4_BAR_POD);
+            pinpoint.setEncoderDirections(GoBildaPinpointDriver.EncoderDirection.FORWARD,
+                                          GoBildaPinpointDriver.EncoderDirection.FORWARD);
+            pinpoint.resetPosAndIMU();
+            return new Odometry(pinpoint, null);
+        }
+        OctoQuad octoquad = hardwareMap.tryGet(OctoQuad.class, "octoquad");
+        if (octoquad != null) {
+            octoquad.setSingleEncoderDirection(OCTOQUAD_PORT_X, OctoQuad.EncoderDirection.FORWARD);
+            octoquad.setSingleEncoderDirection(OCTOQUAD_PORT_Y, OctoQuad.EncoderDirection.REVERSE);
+            octoquad.setLocalizerPortX(OCTOQUAD_PORT_X);
+            octoquad.setLocalizerPortY(OCTOQUAD_PORT_Y);
+            octoquad.setLocalizerCountsPerMM_X(OCTOQUAD_TICKS_PER_MM);
+            octoquad.setLocalizerCountsPerMM_Y(OCTOQUAD_TICKS_PER_MM);
+            octoquad.setLocalizerTcpOffsetMM_X(OCTOQUAD_TCP_OFFSET_X_MM);
+            octoquad.setLocalizerTcpOffsetMM_Y(OCTOQUAD_TCP_OFFSET_Y_MM);
+            octoquad.setLocalizerVelocityIntervalMS(25);
+            octoquad.setI2cRecoveryMode(OctoQuad.I2cRecoveryMode.MODE_1_PERIPH_RST_ON_FRAME_ERR);
+            octoquad.resetLocalizerAndCalibrateIMU();
+            return new Odometry(null, octoquad);
+        }
+        return null;
+    }
+
+    /**
+     * Start the poll thread. The device may still be calibrating; readings are
+     * skipped until it reports ready.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        pollThread = new Thread(this::pollLoop, "Odometry");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (pollThread != null) {
+            pollThread.interrupt();
+            try {
+                pollThread.join(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pollThread = null;
+        }
+    }
+
+    private void pollLoop() {
+        long windowStart = System.nanoTime();
+        int windowSamples = 0;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            boolean ok;
+            try {
+                ok = readDevice();
+            } catch (RuntimeException e) {
+                ok = false; // I2C hiccup - try again next pass
+            }
+            long now = System.nanoTime();
+            if (ok) {
+                synchronized (lock) {
+                    rawX = readX; rawY = readY; rawHeading = readHeading;
+                    rawVx = readVx; rawVy = readVy; rawHeadingRate = readHeadingRate;
+                    publish(now);
+                }
+                windowSamples++;
+            } else {
+                badReads++;
+                Thread.yield();
+            }
+            if (now - windowStart >= 1_000_000_000L) {
+                sampleRateHz = windowSamples * 1.0e9 / (now - windowStart);
+                windowStart = now;
+                windowSamples = 0;
+            }
+        }
+    }
+
+    // One bus transaction; fills the read* fields. Returns false if the reading should be ignored.
+    private boolean readDevice() {
+        if (source == Source.PINPOINT) {
+            pinpoint.update();
+            if (pinpoint.getDeviceStatus() != GoBildaPinpointDriver.DeviceStatus.READY) return false;
+            readX = pinpoint.getPosX(DistanceUnit.INCH);
+            readY = pinpoint.getPosY(DistanceUnit.INCH);
+            readHeading = pinpoint.getHeading(AngleUnit.DEGREES);
+            readVx = pinpoint.getVelX(DistanceUnit.INCH);
+            readVy = pinpoint.getVelY(DistanceUnit.INCH);
+            readHeadingRate = pinpoint.getHeadingVelocity(UnnormalizedAngleUnit.DEGREES);
+        } else {
+            octoquad.readLocalizerData(localizer);
+            if (!localizer.crcOk || localizer.localizerStatus != OctoQuad.LocalizerStatus.RUNNING) return false;
+            readX = localizer.posX_mm / MM_PER_INCH;
+            readY = localizer.posY_mm / MM_PER_INCH;
+            readHeading = Math.toDegrees(localizer.heading_rad);
+            readVx = localizer.velX_mmS / MM_PER_INCH;
+            readVy = localizer.velY_mmS / MM_PER_INCH;
+            readHeadingRate = Math.toDegrees(localizer.velHeading_radS);
+        }
+        return true;
+    }
+
+    // Convert the raw reading into the field frame. Caller holds the lock.
+    private void publish(long timestampNanos) {
+        double cos = Math.cos(Math.toRadians(originHeading));
+        double sin = Math.sin(Math.toRadians(originHeading));
+        shared.x = originX + rawX * cos - rawY * sin;
+        shared.y = originY + rawX * sin + rawY * cos;
+        shared.heading = AngleUnit.normalizeDegrees(originHeading + rawHeading);
+        shared.vx = rawVx * cos - rawVy * sin;
+        shared.vy = rawVx * sin + rawVy * cos;
+        shared.headingRate = rawHeadingRate;
+        shared.timestampNanos = timestampNanos;
+    }
+
+    // True once the device has produced a reading; until then getPose() is all zeros
+    public boolean hasReading() {
+        synchronized (lock) {
+            return shared.timestampNanos != 0L;
+        }
+    }
+
+    /**
+     * Copy the latest pose and velocity into out. Does not touch the bus.
+     */
+    public void getPose(Pose out) {
+        synchronized (lock) {
+            out.copyFrom(shared);
+        }
+    }
+
+    /**
+     * Declare that the robot is at this field pose right now (e.g. from an AprilTag fix).
+     * Only the field transform changes; the device itself is not written to.
+     */
+    public void setFieldPose(double x, double y, double heading) {
+        synchronized (lock) {
+            originHeading = heading - rawHeading;
+            double cos = Math.cos(Math.toRadians(originHeading));
+            double sin = Math.sin(Math.toRadians(originHeading));
+            originX = x - (rawX * cos - rawY * sin);
+            originY = y - (rawX * sin + rawY * cos);
+            if (shared.timestampNanos != 0L) publish(shared.timestampNanos);
+        }
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Successful device reads per second over the last second
+    public double getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public int getBadReads() {
+        return badReads;
+    }
+}
@@ -0,0 +1,212 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.util.RobotLog;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Hands the robot's field pose from one OpMode to the next (autonomous to TeleOp), so the next
+ * one is localized from its first loop instead of waiting to see a tag.
+ *
+ * The pose is published as an immutable, versioned, timestamped Snapshot into the SDK blackboard
+ * (which lives until the app restarts), and mirrored to FIRST/data/pose_handoff.txt so it also
+ * survives a Robot Controller restart mid-match. The file is written on a background thread, so
+ * publishing from the control loop never waits on storage. restore() prefers the blackboard and
+ * falls back to the file; anything from an older format, too old, or too uncertain is ignored.
+ */
+public class PoseHandoff {
+    public static final String BLACKBOARD_KEY = "teamcode.poseHandoff";
+    public static final int VERSION = 2;
+    public static final File FILE = new File(AppUtil.ROBOT_DATA_DIR, "pose_handoff.txt");
+
+    private static final long MAX_AGE_MS = 5 * 60 * 1000;      // older than this is from some other session
+    private static final double MAX_POSITION_STD_IN = 12.0;    // less sure than this isn't worth starting from
+    private static final long FILE_INTERVAL_MS = 1000;         // file mirror rate while publishing every loop
+
+    /** One published pose. Immutable; safe to keep and share. */
+    public static final class Snapshot {
+        public final int version;
+        public final long sequence;        // increases with every publish
+        public final long wallTimeMs;      // System.currentTimeMillis() when published
+        public final String source;        // who published it (OpMode name)
+        public final double x, y, heading; // field inches, degrees CCW (-180 to 180)
+        private final double[] covariance; // x, y, heading: xx, xy, xh, yy, yh, hh
+
+        Snapshot(int version, long sequence, long wallTimeMs, String source,
+                 double x, double y, double heading, double[] covariance) {
+            this.version = version;
+            this.sequence = sequence;
+            this.wallTimeMs = wallTimeMs;
+            this.source = source;
+            this.x = x;
+            this.y = y;
+            this.heading = heading;
+            this.covariance = covariance.clone();
+        }
+
+        /** Covariance entry, in the order xx, xy, xh, yy, yh, hh (inches^2, inch-degrees, degrees^2). */
+        public double getCovariance(int index) {
+            return covariance[index];
+        }
+
+        // 1-sigma position uncertainty, the larger of x and y
+        public double getPositionStdIn() {
+            return Math.sqrt(Math.max(covariance[0], covariance[3]));
+        }
+
+        public double getHeadingStdDeg() {
+            return Math.sqrt(covariance[5]);
+        }
+
+        public double getAgeSec() {
+            return (System.currentTimeMillis() - wallTimeMs) / 1000.0;
+        }
+    }
+
+    // Guarded by PoseHandoff.class
+    private static long sequence = 0;
+    private static long lastFileWriteMs = 0;
+    private static Snapshot unwritten = null;   // newest snapshot not yet handed to a write
+    private static Snapshot pending = null;     // handed to the writer thread, not yet taken
+    private static Thread writer = null;
+
+    private static final Object fileLock = new Object();   // one write at a time
+    private static long writtenSequence = 0;                // guarded by fileLock
+
+    private PoseHandoff() {
+    }
+
+    /**
+     * Publish the current pose. Cheap enough to call every loop: the blackboard is updated each
+     * call, and at most once a second the snapshot is passed to the writer thread for the file
+     * (call flush() when the OpMode ends).
+     * @param covariance x/y/heading covariance: xx, xy, xh, yy, yh, hh
+     */
+    public static synchronized Snapshot publish(String source, double x, double y, double heading,
+                                                double[] covariance) {
+        Snapshot s = new Snapshot(VERSION, ++sequence, System.currentTimeMillis(), source,
+                x, y, heading, covariance);
+        OpMode.blackboard.put(BLACKBOARD_KEY, s);
+        unwritten = s;
+        if (s.wallTimeMs - lastFileWriteMs >= FILE_INTERVAL_MS) {
+            lastFileWriteMs = s.wallTimeMs;
+            pending = s;
+            unwritten = null;
+            if (writer == null) {
+                writer = new Thread(PoseHandoff::writerLoop, "PoseHandoff");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            PoseHandoff.class.notifyAll();
+        }
+        return s;
+    }
+
+    /**
+     * Write the latest published snapshot to the file now, if it hasn't been already.
+     * Waits for the file, so call it when the OpMode ends, not from the loop.
+     */
+    public static void flush() {
+        Snapshot s;
+        synchronized (PoseHandoff.class) {
+            s = (unwritten != null) ? unwritten : pending;
+            unwritten = pending = null;
+        }
+        if (s != null) writeLatest(s);
+    }
+
+    private static void writerLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Snapshot s;
+            synchronized (PoseHandoff.class) {
+                try {
+                    while (pending == null) PoseHandoff.class.wait();
+                } catch (InterruptedException e) {
+                    writer = null;
+                    return;
+                }
+                s = pending;
+                pending = null;
+            }
+            writeLatest(s);
+        }
+    }
+
+    // Write s unless a newer snapshot is already in the file (flush() and the writer can race)
+    private static void writeLatest(Snapshot s) {
+        synchronized (fileLock) {
+            if (s.sequence <= writtenSequence) return;
+            try {
+                write(s);
+                writtenSequence = s.sequence;
+            } catch (IOException e) {
+                RobotLog.ee("PoseHandoff", e, "could not write %s", FILE.getName());
+            }
+        }
+    }
+
+    /**
+     * The pose the previous OpMode left behind.
+     * @param problems receives why nothing was restored, if nothing was (may be null)
+     * @return the snapshot, or null if there is no usable one
+     */
+    public static synchronized Snapshot restore(StringBuilder problems) {
+        Object posted = OpMode.blackboard.get(BLACKBOARD_KEY);
+        Snapshot s = (posted instanceof Snapshot) ? (Snapshot) posted : null;
+        if (s == null) {
+            try {
+                s = read();
+            } catch (IOException | RuntimeException e) {
+                if (problems != null) problems.append(FILE.getName()).append(": ").append(e.getMessage());
+                return null;
+            }
+        }
+        String reason = null;
+        if (s == null) reason = "none published";
+        else if (s.version != VERSION) reason = "format v" + s.version + ", expected v" + VERSION;
+        else if (s.getAgeSec() * 1000 > MAX_AGE_MS || s.getAgeSec() < 0) reason = String.format(Locale.US, "too old (%.0f s)", s.getAgeSec());
+        else if (!(s.getPositionStdIn() <= MAX_POSITION_STD_IN)) reason = String.format(Locale.US, "too uncertain (%.1f in)", s.getPositionStdIn());
+        if (reason != null) {
+            if (problems != null) problems.append(reason);
+            return null;
+        }
+        return s;
+    }
+
+    // Written to a temp file and renamed, so a crash mid-write leaves the previous snapshot intact
+    private static void write(Snapshot s) throws IOException {
+        File tmp = new File(FILE.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(tmp)) {
+            out.printf(Locale.US, "%d %d %d %s%n", s.version, s.sequence, s.wallTimeMs, s.source.replace(' ', '_'));
+            out.printf(Locale.US, "%.4f %.4f %.4f%n", s.x, s.y, s.heading);
+            for (int i = 0; i < s.covariance.length; i++) {
+                out.printf(Locale.US, i == 0 ? "%.6f" : " %.6f", s.covariance[i]);
+            }
+            out.println();
+            if (out.checkError()) throw new IOException("write failed");
+        }
+        if (!tmp.renameTo(FILE)) throw new IOException("could not replace " + FILE.getName());
+    }
+
+    private static Snapshot read() throws IOException {
+        if (!FILE.exists()) return null;
+        try (BufferedReader in = new BufferedReader(new FileReader(FILE))) {
+            String[] header = in.readLine().trim().split("\\s+");
+            String[] pose = in.readLine().trim().split("\\s+");
+            String[] cov = in.readLine().trim().split("\\s+");
+            double[] covariance = new double[6];
+            for (int i = 0; i < covariance.length; i++) covariance[i] = Double.parseDouble(cov[i]);
+            return new Snapshot(Integer.parseInt(header[0]), Long.parseLong(header[1]), Long.parseLong(header[2]),
+                    header[3] + " (file)",
+                    Double.parseDouble(pose[0]), Double.parseDouble(pose[1]), Double.parseDouble(pose[2]),
+                    covariance);
+        }
+    }
+}
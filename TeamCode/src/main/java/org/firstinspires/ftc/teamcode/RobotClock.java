@@ -0,0 +1,59 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Time source for control code. OpModes use SYSTEM on the robot; the tests' VirtualClock can be
+ * swapped in to run the same logic off the robot without really waiting (a 20 second
+ * timeout takes no time at all).
+ */
+public interface RobotClock {
+    // Monotonic time in nanoseconds, like System.nanoTime()
+    long nanoTime();
+
+    // Wait (or pretend to) for this many milliseconds
+    void sleep(long ms);
+
+    default Timer newTimer() {
+        return new Timer(this);
+    }
+
+    RobotClock SYSTEM = new RobotClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long ms) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // same as LinearOpMode.sleep(): let opModeIsActive() see the stop
+            }
+        }
+    };
+
+    /**
+     * Elapsed time since the last reset(), like ElapsedTime but on a RobotClock.
+     */
+    class Timer {
+        private final RobotClock clock;
+        private long startNanos;
+
+        Timer(RobotClock clock) {
+            this.clock = clock;
+            reset();
+        }
+
+        public void reset() {
+            startNanos = clock.nanoTime();
+        }
+
+        public double seconds() {
+            return (clock.nanoTime() - startNanos) / 1.0e9;
+        }
+
+        public double milliseconds() {
+            return (clock.nanoTime() - startNanos) / 1.0e6;
+        }
+    }
+}
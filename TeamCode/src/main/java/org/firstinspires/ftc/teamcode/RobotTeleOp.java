@@ -32,24 +32,26 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
-
-import com.qualcomm.hardware.limelightvision.Limelight3A;
-import com.qualcomm.hardware.limelightvision.LLResult;
-import com.qualcomm.hardware.limelightvision.LLResultTypes;
-import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
-import org.firstinspires.ftc.robotcore.external.navigation.Position;
-import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
-import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 
-import java.util.List;
 
 /**
  * TeleOp mode for controlling the robot with a Logitech gamepad.
- * Uses tank drive with left stick for forward/backward and right stick for turning.
- * Displays robot field position when AprilTags 20 or 24 are detected.
+ * Mecanum drive: left stick moves the robot, right stick turns it. The left stick is
+ * field-relative (stick up always drives away from the drivers, whichever way the robot faces)
+ * while a field heading is known - odometry's, else the IMU's - and robot-relative while the left
+ * bumper is held. Letting go of the right stick holds the heading the robot settles on.
+ * Holding the right trigger turns the robot to face the goal tag (AimAssist) while the left
+ * stick still moves it.
+ * Displays robot field position when AprilTags 20 or 24 are detected. With MegaTag2 on
+ * (teleop.megaTag2, and FieldLayout matched to the Limelight's map), the Limelight is given
+ * the robot's heading every loop and its field pose is used for position, falling back to the
+ * per-tag pose when there isn't one.
+ * Starts from the pose the previous OpMode handed off (PoseHandoff), if there is one, and
+ * hands its own pose on the same way.
  */
 
 @TeleOp(name="Robot TeleOp", group="TeleOp")
@@ -61,118 +63,412 @@ public class RobotTeleOp extends LinearOpMode {
     private DcMotor frontRight = null;
     private DcMotor backLeft = null;
     private DcMotor backRight = null;
-    private Limelight3A limelight;
+    private volatile TagVision vision;                   // Limelight, plus webcam if configured; set by its init thread
+    private volatile Odometry odometry;                  // null if no Pinpoint/OctoQuad configured
+    private final Odometry.Pose odometryPose = new Odometry.Pose();
 
-    // AprilTag field positions (in inches) - adjust these to match your field setup
-    // Format: {x, y, heading_degrees}
-    private static final double[] TAG_20_FIELD_POS = {0.0, 0.0, 0.0};    // Example: origin, facing forward
-    private static final double[] TAG_24_FIELD_POS = {144.0, 72.0, 90.0}; // Example: 12ft right, 6ft forward, facing right
+    // AprilTag field positions are in FieldLayout
+    private final double[] tagFieldPos = new double[3];
+    private final TagFilter tagFilter = new TagFilter();  // drops glancing-angle pose outliers
     private static final double INCHES_PER_METER = 39.3701;
 
+    // Path planning to a tag standoff pose (Y button), from the last known field position
+    private static final int PLAN_TAG_ID = 20;
+    private static final double PLAN_STANDOFF_IN = 24.0;
+    private final GridPlanner planner = new GridPlanner();
+    private static final double LOOP_BUDGET_MS = 25.0;   // loop period we expect to hold
+
+    private final LoopWatchdog watchdog = new LoopWatchdog(LOOP_BUDGET_MS);
+    private final LoopStream.Sample streamSample = new LoopStream.Sample(); // every loop to the laptop viewer
+    private VoltageCompensator voltage;                   // same stick, same speed at any battery voltage
+    private DriveHealth health;                           // stall and current protection
+    private volatile AsyncHeading imuHeading;            // null until the IMU is up (or if there isn't one)
+
+    // Field-relative drive and heading hold
+    private static final double DRIVER_FACING_DEG = 0.0;         // field heading the drivers look along - set per alliance
+    private static final double STICK_DEADBAND = 0.05;
+    private static final double HOLD_SETTLE_DPS = 30.0;          // capture the heading to hold once the turn slows to this...
+    private static final double HOLD_CAPTURE_SEC = 0.3;          // ...or this long after the stick is let go
+    private static final double IMU_OFFSET_BLEND = 0.1;          // how far each tag fix pulls the IMU's field heading
+    private static final Tuning.Param HOLD_GAIN = Tuning.define("teleop.holdGain", 0.02, 0, 0.2);           // turn power per degree off
+    private static final Tuning.Param HOLD_RATE_GAIN = Tuning.define("teleop.holdRateGain", 0.002, 0, 0.02); // turn power per deg/s
+    private static final Tuning.Param HOLD_MAX_TURN = Tuning.define("teleop.holdMaxTurn", 0.4, 0, 1);
+    private final MecanumKinematics kinematics = new MecanumKinematics(VelocityDrive.TRACK_WIDTH_IN, VelocityDrive.WHEEL_BASE_IN);
+    private final double[] wheelPowers = new double[4];  // FL, FR, BL, BR
+    private final AimAssist aimAssist = new AimAssist();  // right trigger: face the tag
+    private static final double AIM_TRIGGER = 0.5;
+
+    // Init time limits (ms). Only the drive motors hold up START; the rest join in when ready.
+    private static final long MOTOR_INIT_TIMEOUT_MS = 500;
+    private static final long VISION_INIT_TIMEOUT_MS = 3000;
+    private static final long ODOMETRY_INIT_TIMEOUT_MS = 1500;
+    private static final long IMU_INIT_TIMEOUT_MS = 1000;
+
+    // Pose handoff: how sure we are of the known pose, published with it
+    private static final double TAG_POSITION_VAR = 1.5 * 1.5;    // in^2, one tag fix
+    private static final double TAG_HEADING_VAR = 3.0 * 3.0;     // deg^2
+    private static final double ODOMETRY_VAR_PER_IN = 0.01;      // in^2 added per inch driven (~1% drift)
+    private static final double PUBLISH_INTERVAL_SEC = 0.1;
+
+    // Localization: 1 = Limelight MegaTag2 field pose (heading-seeded), 0 = per-tag pose only
+    private static final Tuning.Param MEGATAG2 = Tuning.define("teleop.megaTag2", 1, 0, 1);
+    private final Odometry.Pose megaTagPose = new Odometry.Pose();
+    private final double[] poseCovariance = new double[6];       // xx, xy, xh, yy, yh, hh
+
     @Override
     public void runOpMode() {
         telemetry.addData("Status", "Initializing...");
         telemetry.update();
 
-        // Initialize the hardware variables
-        frontLeft  = hardwareMap.get(DcMotor.class, "frontLeft");
-        frontRight = hardwareMap.get(DcMotor.class, "frontRight");
-        backLeft   = hardwareMap.get(DcMotor.class, "backLeft");
-        backRight  = hardwareMap.get(DcMotor.class, "backRight");
-
-        // Set motor directions (same as AprilTagFollower)
-        frontLeft.setDirection(DcMotor.Direction.REVERSE);
-        backLeft.setDirection(DcMotor.Direction.FORWARD);
-        frontRight.setDirection(DcMotor.Direction.FORWARD);
-        backRight.setDirection(DcMotor.Direction.FORWARD);
-
-        // Set motors to brake when power is zero
-        frontLeft.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        frontRight.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        backLeft.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        backRight.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-
-        // Initialize the Limelight
-        limelight = hardwareMap.get(Limelight3A.class, "limelight");
-        limelight.setPollRateHz(100);
-        limelight.pipelineSwitch(0);
-        limelight.start();
-
-        telemetry.addData("Status", "Ready to start");
-        telemetry.addData("Controls", "Left stick: drive, Right stick: turn");
-        telemetry.update();
+        // Initialize the hardware, all devices at once. Motor directions are the same as AprilTagFollower.
+        HardwareBootstrap boot = new HardwareBootstrap()
+                .add("frontLeft", true, MOTOR_INIT_TIMEOUT_MS, () -> frontLeft = initMotor("frontLeft", DcMotor.Direction.REVERSE))
+                .add("frontRight", true, MOTOR_INIT_TIMEOUT_MS, () -> frontRight = initMotor("frontRight", DcMotor.Direction.FORWARD))
+                .add("backLeft", true, MOTOR_INIT_TIMEOUT_MS, () -> backLeft = initMotor("backLeft", DcMotor.Direction.FORWARD))
+                .add("backRight", true, MOTOR_INIT_TIMEOUT_MS, () -> backRight = initMotor("backRight", DcMotor.Direction.FORWARD))
+                .add("vision", false, VISION_INIT_TIMEOUT_MS, () -> {
+                    // The Limelight (and the webcam AprilTag pipeline, if there is one)
+                    TagVision v = new TagVision(hardwareMap);
+                    v.start();
+                    vision = v;
+                })
+                .add("odometry", false, ODOMETRY_INIT_TIMEOUT_MS, () -> {
+                    // Dead-wheel odometry (optional) - keeps the pose between tag sightings
+                    Odometry o = Odometry.create(hardwareMap);
+                    if (o != null) o.start();
+                    odometry = o;
+                })
+                .add("imu", false, IMU_INIT_TIMEOUT_MS, () -> {
+                    // Control Hub IMU, read on its own thread - heading for field-relative drive and heading hold
+                    HeadingTracker tracker = new HeadingTracker(hardwareMap.get(IMU.class, "imu"));
+                    tracker.reset();
+                    AsyncHeading h = new AsyncHeading(tracker);
+                    h.start();
+                    imuHeading = h;
+                });
+        boot.start();
+        if (!boot.awaitCritical()) {
+            boot.report(telemetry);
+            telemetry.addData("Status", "Drive motors did not initialize - check the configuration");
+            telemetry.update();
+            waitForStart();
+            return;
+        }
+
+        voltage = new VoltageCompensator(hardwareMap);
+        health = new DriveHealth(hardwareMap);
+
+        // Where autonomous (or the last run) left the robot
+        StringBuilder handoffProblem = new StringBuilder();
+        PoseHandoff.Snapshot handoff = PoseHandoff.restore(handoffProblem);
 
-        // Wait for the game to start (driver presses START)
+        // Wait for the game to start (driver presses START), showing sensors as they come up
+        while (!isStarted() && !isStopRequested()) {
+            boot.report(telemetry);
+            if (boot.isReady("vision") && vision.getLimelightMonitor() != null) vision.getLimelightMonitor().report(telemetry);
+            if (boot.isReady("odometry")) {
+                telemetry.addData("Odometry", odometry != null ? odometry.getSource().toString() : "None configured - tags only");
+            }
+            if (handoff != null) {
+                telemetry.addData("Start Pose", "X: %.1f\" Y: %.1f\" H: %.1f (+/- %.1f\", from %s %.0f s ago)",
+                        handoff.x, handoff.y, handoff.heading, handoff.getPositionStdIn(), handoff.source, handoff.getAgeSec());
+            } else {
+                telemetry.addData("Start Pose", "Unknown (%s) - waiting for tag 20/24", handoffProblem);
+            }
+            telemetry.addData("Status", "Ready to start");
+            telemetry.addData("Controls", "Left stick: drive (field), LB: robot-relative, Right stick: turn, RT: aim at tag, A: reset heading, Y: plan path to tag " + PLAN_TAG_ID);
+            telemetry.update();
+            sleep(50);
+        }
         waitForStart();
         runtime.reset();
 
+        boolean lastPlanButton = false;
+        boolean havePlan = false;
+        double knownX = 0, knownY = 0, knownHeading = 0;
+        boolean haveKnownPose = false;
+        boolean seedOdometry = false;   // odometry still to be given the known pose once it has a reading
+        double lastPublish = 0;
+        // IMU heading + imuOffset = field heading. The IMU was zeroed at init, facing the handed-off
+        // heading if there is one, else (placed squarely) away from the drivers.
+        double imuOffset = (handoff != null) ? handoff.heading : DRIVER_FACING_DEG;
+        boolean imuOffsetKnown = handoff != null;   // else snapped to the first tag fix
+        long lastMegaTagNanos = 0L;
+        boolean holding = false;
+        double holdHeading = 0, turnReleasedAt = 0;
+        if (handoff != null) {
+            knownX = handoff.x;
+            knownY = handoff.y;
+            knownHeading = handoff.heading;
+            haveKnownPose = true;
+            seedOdometry = true;
+            for (int i = 0; i < poseCovariance.length; i++) poseCovariance[i] = handoff.getCovariance(i);
+        }
+
         // Run until the end of the match (driver presses STOP)
         while (opModeIsActive()) {
+            // Sensors still initializing (or given up on) are left out; odometry until its first reading
+            TagVision vision = boot.isReady("vision") ? this.vision : null;
+            Odometry odometry = (boot.isReady("odometry") && this.odometry != null && this.odometry.hasReading())
+                    ? this.odometry : null;
+            AsyncHeading imuHeading = boot.isReady("imu") ? this.imuHeading : null;
+
+            // Shed load if the loop keeps running long
+            watchdog.tick();
+            health.update();   // bulk read - before anything reads the motors
+            voltage.update();
+            if (vision != null) {
+                vision.setExtrasEnabled(watchdog.shouldRunVisionExtras());
+                if (vision.getRecorder() != null) vision.getRecorder().setWritesPaused(!watchdog.shouldLog());
+            }
+
+            // Odometry's first reading: begin from the handed-off (or latest tag) pose
+            if (odometry != null && seedOdometry) {
+                odometry.setFieldPose(knownX, knownY, knownHeading);
+                seedOdometry = false;
+            }
 
-            // Get AprilTag data from Limelight
-            LLResult result = limelight.getLatestResult();
+            // MegaTag2: the Limelight needs our field heading before it solves the next frame.
+            // Only once the heading is really known - a wrong one gives a confidently wrong pose.
+            AsyncHeading imu = (imuHeading != null && imuHeading.hasReading()) ? imuHeading : null;
+            LimelightMonitor limelightMonitor = (vision != null) ? vision.getLimelightMonitor() : null;
+            boolean megaTag = Tuning.current().get(MEGATAG2) > 0 && vision != null && vision.isMegaTagAvailable()
+                    && limelightMonitor != null && limelightMonitor.isUsable();
+            if (vision != null && megaTag) {
+                if (odometry != null && haveKnownPose) {
+                    odometry.getPose(odometryPose);
+                    vision.setRobotYaw(odometryPose.heading);
+                } else if (imu != null && imuOffsetKnown) {
+                    vision.setRobotYaw(imu.getHeading() + imuOffset);
+                }
+            }
+
+            // Get AprilTag data from whichever camera has the freshest view
+            if (vision != null) vision.update(imu != null ? imu.getRate() : 0.0);
             boolean hasLocalization = false;
+            boolean tagHeadingFix = false;   // robotFieldHeading measured from a tag (MegaTag2 only echoes ours)
             double robotFieldX = 0, robotFieldY = 0, robotFieldHeading = 0;
             int detectedTagId = -1;
+            boolean fromMegaTag = false;
+
+            int tagCount = (vision != null) ? vision.getCount() : 0;
+            for (int i = 0; i < tagCount; i++) {
+                TagDetection tag = vision.get(i);
+                int tagId = tag.id;
+                if ((tagId == 20 || tagId == 24) && tag.hasPose && tagFilter.accept(tag)
+                        && FieldLayout.tagPose(tagId, tagFieldPos)) {
+                    // Convert robot position from tag space to field space
+                    double[] robotPos = calculateRobotFieldPosition(
+                        tag,
+                        tagFieldPos[0], tagFieldPos[1], tagFieldPos[2]
+                    );
+                    robotFieldX = robotPos[0];
+                    robotFieldY = robotPos[1];
+                    robotFieldHeading = robotPos[2];
+                    detectedTagId = tagId;
+                    hasLocalization = true;
+                    tagHeadingFix = true;
+                    break;
+                }
+            }
+            // MegaTag2 position beats the single-tag solve; keep the tag's heading if there was one
+            // (each frame once - odometry carries the pose on between frames)
+            if (vision != null && megaTag && vision.getMegaTagPose(megaTagPose) && megaTagPose.timestampNanos != lastMegaTagNanos) {
+                lastMegaTagNanos = megaTagPose.timestampNanos;
+                robotFieldX = megaTagPose.x;
+                robotFieldY = megaTagPose.y;
+                if (!tagHeadingFix) robotFieldHeading = megaTagPose.heading;
+                hasLocalization = true;
+                fromMegaTag = true;
+            }
+            if (hasLocalization && odometry != null) odometry.setFieldPose(robotFieldX, robotFieldY, robotFieldHeading);
+
+            // Best current position: odometry if we have it, else the last tag fix
+            if (odometry != null && haveKnownPose) {
+                odometry.getPose(odometryPose);
+                double moved = Math.hypot(odometryPose.x - knownX, odometryPose.y - knownY);
+                poseCovariance[0] += ODOMETRY_VAR_PER_IN * moved;
+                poseCovariance[3] += ODOMETRY_VAR_PER_IN * moved;
+                knownX = odometryPose.x;
+                knownY = odometryPose.y;
+                knownHeading = odometryPose.heading;
+            }
+            if (hasLocalization) {
+                knownX = robotFieldX;
+                knownY = robotFieldY;
+                knownHeading = robotFieldHeading;
+                haveKnownPose = true;
+                seedOdometry = odometry == null;   // no reading yet: seed it from this fix when one comes
+                setTagCovariance();
+            }
+
+            // Hand the pose on (to the next run, or to ourselves after a restart) while it is current
+            if ((hasLocalization || (odometry != null && haveKnownPose)) && runtime.seconds() - lastPublish >= PUBLISH_INTERVAL_SEC) {
+                PoseHandoff.publish("RobotTeleOp", knownX, knownY, knownHeading, poseCovariance);
+                lastPublish = runtime.seconds();
+            }
 
-            if (result != null && result.isValid()) {
-                List<LLResultTypes.FiducialResult> fiducials = result.getFiducialResults();
-                if (fiducials != null && !fiducials.isEmpty()) {
-                    for (LLResultTypes.FiducialResult fiducial : fiducials) {
-                        int tagId = fiducial.getFiducialId();
-                        if (tagId == 20 || tagId == 24) {
-                            // Get robot pose relative to the tag
-                            Pose3D robotPoseTagSpace = fiducial.getRobotPoseTargetSpace();
-                            if (robotPoseTagSpace != null) {
-                                // Convert robot position from tag space to field space
-                                double[] tagFieldPos = (tagId == 20) ? TAG_20_FIELD_POS : TAG_24_FIELD_POS;
-                                double[] robotPos = calculateRobotFieldPosition(
-                                    robotPoseTagSpace,
-                                    tagFieldPos[0], tagFieldPos[1], tagFieldPos[2]
-                                );
-                                robotFieldX = robotPos[0];
-                                robotFieldY = robotPos[1];
-                                robotFieldHeading = robotPos[2];
-                                detectedTagId = tagId;
-                                hasLocalization = true;
-                                break;
-                            }
-                        }
-                    }
+            // Y: plan a path from here to the standoff pose in front of the tag
+            if (gamepad1.y && !lastPlanButton && haveKnownPose) {
+                havePlan = planner.planToTag(knownX, knownY, PLAN_TAG_ID, PLAN_STANDOFF_IN);
+            }
+            lastPlanButton = gamepad1.y;
+
+            // Field heading for driving: odometry's (tag-corrected) if it has a pose, else the IMU's
+            // plus an offset that tag fixes keep pulling toward the truth
+            if (imu != null && tagHeadingFix) {
+                double error = AngleUnit.normalizeDegrees(robotFieldHeading - (imu.getHeading() + imuOffset));
+                imuOffset += imuOffsetKnown ? IMU_OFFSET_BLEND * error : error;
+                imuOffsetKnown = true;
+            }
+            boolean haveFieldHeading = true;
+            double fieldHeading = 0, headingRate = 0;
+            String headingSource;
+            if (odometry != null && haveKnownPose) {
+                fieldHeading = knownHeading;
+                headingRate = (imu != null) ? imu.getRate() : 0.0;
+                headingSource = "odometry";
+            } else if (imu != null) {
+                fieldHeading = imu.getHeading() + imuOffset;
+                headingRate = imu.getRate();
+                headingSource = "IMU";
+            } else {
+                haveFieldHeading = false;
+                headingSource = "none";
+            }
+
+            // A: the robot is facing away from the drivers now
+            if (gamepad1.a && haveFieldHeading) {
+                if (imu != null) imuOffset = DRIVER_FACING_DEG - imu.getHeading();
+                if (odometry != null && haveKnownPose) {
+                    odometry.setFieldPose(knownX, knownY, DRIVER_FACING_DEG);
+                    knownHeading = DRIVER_FACING_DEG;
+                }
+                fieldHeading = DRIVER_FACING_DEG;
+                holding = false;
+            }
+
+            // Left stick moves, right stick turns (CCW positive). Pushing a stick forward gives negative values.
+            double forward = -gamepad1.left_stick_y;
+            double left = -gamepad1.left_stick_x;
+            double turn = -gamepad1.right_stick_x;
+
+            // Field-relative: rotate the stick from the drivers' frame into the robot's
+            boolean fieldRelative = haveFieldHeading && !gamepad1.left_bumper;
+            if (fieldRelative) {
+                double angle = Math.toRadians(DRIVER_FACING_DEG - fieldHeading);
+                double cos = Math.cos(angle), sin = Math.sin(angle);
+                double robotForward = forward * cos - left * sin;
+                left = forward * sin + left * cos;
+                forward = robotForward;
+            }
+
+            // Heading hold: once the turn stick is let go and the robot has stopped turning, keep that heading
+            if (Math.abs(turn) > STICK_DEADBAND || !haveFieldHeading) {
+                holding = false;
+                turnReleasedAt = runtime.seconds();
+            } else {
+                if (!holding && (Math.abs(headingRate) < HOLD_SETTLE_DPS || runtime.seconds() - turnReleasedAt > HOLD_CAPTURE_SEC)) {
+                    holding = true;
+                    holdHeading = fieldHeading;
+                }
+                if (holding) {
+                    Tuning.Snapshot tuning = Tuning.current();
+                    double error = AngleUnit.normalizeDegrees(holdHeading - fieldHeading);
+                    double maxTurn = tuning.get(HOLD_MAX_TURN);
+                    turn = Range.clip(error * tuning.get(HOLD_GAIN) - headingRate * tuning.get(HOLD_RATE_GAIN), -maxTurn, maxTurn);
+                } else {
+                    turn = 0;
                 }
             }
 
-            // POV Mode uses left stick to go forward/backward, and right stick to turn
-            // Note: pushing stick forward gives negative values
-            double drive = -gamepad1.left_stick_y;  // Forward/backward
-            double turn  =  gamepad1.right_stick_x; // Left/right turn
+            // Right trigger: the assist takes the turn (every loop, predicting between camera frames); the driver keeps the left stick
+            boolean havePosition = odometry != null && haveKnownPose;
+            double aimTurn = aimAssist.update(vision, gamepad1.right_trigger > AIM_TRIGGER,
+                    haveFieldHeading ? fieldHeading : Double.NaN, headingRate,
+                    havePosition ? knownX : Double.NaN, havePosition ? knownY : Double.NaN);
+            if (!Double.isNaN(aimTurn)) {
+                turn = aimTurn;
+                holding = false;   // hold whatever heading the aim ends on
+            }
 
-            // Tank drive: left and right motor powers
-            double leftPower  = Range.clip(drive + turn, -1.0, 1.0);
-            double rightPower = Range.clip(drive - turn, -1.0, 1.0);
+            // Missing deadlines badly: stop until the loop recovers rather than drive on stale commands
+            if (watchdog.isSafeStop()) {
+                forward = 0;
+                left = 0;
+                turn = 0;
+                holding = false;
+            }
+            setDrive(forward, left, turn);
 
-            // Send calculated power to wheels
-            frontLeft.setPower(leftPower);
-            backLeft.setPower(leftPower);
-            frontRight.setPower(rightPower);
-            backRight.setPower(rightPower);
+            // Full-rate copy of this loop for the web viewer (http://192.168.43.1:8080/loop)
+            streamSample.loopMs = watchdog.getLastCycleMs();
+            streamSample.hasPose = haveKnownPose;
+            streamSample.x = knownX;
+            streamSample.y = knownY;
+            streamSample.heading = knownHeading;
+            streamSample.setPowers(wheelPowers[0], wheelPowers[1], wheelPowers[2], wheelPowers[3]);
+            streamSample.tagCount = 0;
+            for (int i = 0; i < tagCount; i++) {
+                TagDetection tag = vision.get(i);
+                streamSample.addTag(tag.id, tag.bearingDeg, tag.hasPose ? Math.hypot(tag.x, tag.z) * INCHES_PER_METER : 0);
+            }
+            LoopStream.publish(streamSample);
 
             // Show the elapsed game time and wheel power
             telemetry.addData("Status", "Running");
             telemetry.addData("Runtime", "%.1f sec", runtime.seconds());
-            telemetry.addData("Motors", "left (%.2f), right (%.2f)", leftPower, rightPower);
-            telemetry.addData("Sticks", "drive (%.2f), turn (%.2f)", drive, turn);
+            telemetry.addData("Motors", "FL (%.2f), FR (%.2f), BL (%.2f), BR (%.2f)",
+                    wheelPowers[0], wheelPowers[1], wheelPowers[2], wheelPowers[3]);
+            telemetry.addData("Battery", "%.2f V (powers x%.2f)", voltage.getVoltage(), voltage.getScale());
+            health.report(telemetry);
+            telemetry.addData("Drive", "%s, heading %s%s", fieldRelative ? "field-relative" : "robot-relative",
+                    haveFieldHeading ? String.format("%.1f (%s)", AngleUnit.normalizeDegrees(fieldHeading), headingSource) : "unknown",
+                    holding ? String.format(", holding %.1f", AngleUnit.normalizeDegrees(holdHeading)) : "");
+            telemetry.addData("Command", "forward (%.2f), left (%.2f), turn (%.2f)", forward, left, turn);
+            if (gamepad1.right_trigger > AIM_TRIGGER) aimAssist.report(telemetry);
             telemetry.addData("---", "---");
             
-            if (hasLocalization) {
-                telemetry.addData("Localization", "Tag %d detected", detectedTagId);
-                telemetry.addData("Robot Field Pos", "X: %.1f\" Y: %.1f\"", robotFieldX, robotFieldY);
-                telemetry.addData("Robot Heading", "%.1f degrees", robotFieldHeading);
+            if (fromMegaTag) {
+                telemetry.addData("Localization", "MegaTag2, %d tag(s) at %.0f in, %.0f ms old",
+                        vision.getMegaTagTagCount(), vision.getMegaTagAvgDistIn(), vision.getMegaTagAgeMs());
+            } else if (hasLocalization) {
+                telemetry.addData("Localization", "Tag %d detected (%s)", detectedTagId, vision.find(detectedTagId).source);
             } else {
                 telemetry.addData("Localization", "No tags 20/24 visible");
             }
+            if (Tuning.current().get(MEGATAG2) > 0 && vision != null && vision.hasLimelight() && !vision.isMegaTagAvailable()) {
+                telemetry.addData("MegaTag2", "off: FieldLayout not matched to the Limelight map");
+            }
+            if (hasLocalization) {
+                telemetry.addData("Robot Field Pos", "X: %.1f\" Y: %.1f\"", robotFieldX, robotFieldY);
+                telemetry.addData("Robot Heading", "%.1f degrees%s", robotFieldHeading, tagHeadingFix ? "" : " (ours)");
+            }
+            if (detectedTagId >= 0) {
+                telemetry.addData("Tag Filter", "%d accepted, %d rejected",
+                        tagFilter.getAccepted(detectedTagId), tagFilter.getRejects(detectedTagId));
+            }
+            if (limelightMonitor != null) {
+                limelightMonitor.report(telemetry);
+                RollingStats latency = vision.getLimelightLatency();
+                telemetry.addData("Limelight Latency", "latency %.0f ms (max %.0f), frame %.0f ms old, MegaTag2 %d poses, %d rejected turning",
+                        latency.getMedian(), latency.getMax(), vision.getLimelightAgeMs(), vision.getMegaTagFrames(), vision.getMegaTagRejects());
+            }
+            if (odometry != null) {
+                odometry.getPose(odometryPose);
+                telemetry.addData("Odometry Pos", "X: %.1f\" Y: %.1f\" H: %.1f (%.0f Hz)",
+                        odometryPose.x, odometryPose.y, odometryPose.heading, odometry.getSampleRateHz());
+            }
+            if (havePlan) {
+                telemetry.addData("Path to tag " + PLAN_TAG_ID, "%d points, %.0f in, end heading %.0f (%.1f ms)",
+                        planner.getPathLength(), planner.getPathInches(), planner.getGoalHeading(), planner.getLastPlanMs());
+                int last = planner.getPathLength() - 1;
+                telemetry.addData("Next waypoint", "X: %.1f\" Y: %.1f\"", planner.getPathX(Math.min(1, last)), planner.getPathY(Math.min(1, last)));
+            }
+            watchdog.report(telemetry);
             
-            telemetry.update();
+            if (watchdog.shouldSendTelemetry()) telemetry.update();
+            else telemetry.clear();
         }
 
         // Stop all motors when OpMode ends
@@ -180,32 +476,62 @@ public class RobotTeleOp extends LinearOpMode {
         frontRight.setPower(0);
         backLeft.setPower(0);
         backRight.setPower(0);
-        limelight.stop();
+        if (vision != null) vision.stop();
+        if (odometry != null) odometry.stop();
+        if (imuHeading != null) imuHeading.stop();
+        PoseHandoff.flush();
 
         telemetry.addData("Status", "Stopped");
         telemetry.update();
     }
 
+    /**
+     * Mecanum drive from fractions of full speed (robot frame, +left, CCW turn), scaled down
+     * together if any wheel would pass full power, then battery and current compensated.
+     */
+    private void setDrive(double forward, double left, double turn) {
+        kinematics.inverse(forward, left, kinematics.turnRateFor(turn), wheelPowers);
+        MecanumKinematics.desaturate(wheelPowers, 1.0);
+        frontLeft.setPower(health.limit(DriveHealth.FRONT_LEFT, voltage.compensate(wheelPowers[0])));
+        frontRight.setPower(health.limit(DriveHealth.FRONT_RIGHT, voltage.compensate(wheelPowers[1])));
+        backLeft.setPower(health.limit(DriveHealth.BACK_LEFT, voltage.compensate(wheelPowers[2])));
+        backRight.setPower(health.limit(DriveHealth.BACK_RIGHT, voltage.compensate(wheelPowers[3])));
+    }
+
+    // Uncertainty right after a tag fix: position and heading independent
+    private void setTagCovariance() {
+        for (int i = 0; i < poseCovariance.length; i++) poseCovariance[i] = 0;
+        poseCovariance[0] = TAG_POSITION_VAR;
+        poseCovariance[3] = TAG_POSITION_VAR;
+        poseCovariance[5] = TAG_HEADING_VAR;
+    }
+
+    private DcMotor initMotor(String name, DcMotor.Direction direction) {
+        DcMotor motor = hardwareMap.get(DcMotor.class, name);
+        motor.setDirection(direction);
+        motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+        return motor;
+    }
+
     /**
      * Calculate robot position on the field from AprilTag detection
-     * @param robotPoseTagSpace Robot pose relative to the tag
+     * @param robotPoseTagSpace Robot pose relative to the tag (meters, degrees)
      * @param tagFieldX Tag X position on field (inches)
      * @param tagFieldY Tag Y position on field (inches)
      * @param tagFieldHeading Tag heading on field (degrees)
      * @return [robotFieldX, robotFieldY, robotFieldHeading]
      */
-    private double[] calculateRobotFieldPosition(Pose3D robotPoseTagSpace, 
+    private double[] calculateRobotFieldPosition(TagDetection robotPoseTagSpace, 
                                                   double tagFieldX, 
                                                   double tagFieldY, 
                                                   double tagFieldHeading) {
         // Get robot position relative to tag (in inches)
-        double robotX = robotPoseTagSpace.getPosition().x * INCHES_PER_METER;
-        double robotY = robotPoseTagSpace.getPosition().y * INCHES_PER_METER;
-        double robotZ = robotPoseTagSpace.getPosition().z * INCHES_PER_METER;
+        double robotX = robotPoseTagSpace.x * INCHES_PER_METER;
+        double robotY = robotPoseTagSpace.y * INCHES_PER_METER;
+        double robotZ = robotPoseTagSpace.z * INCHES_PER_METER;
         
         // Get robot orientation relative to tag
-        YawPitchRollAngles angles = robotPoseTagSpace.getOrientation();
-        double robotYaw = angles.getYaw(AngleUnit.DEGREES);
+        double robotYaw = robotPoseTagSpace.yawDeg;
         
         // Transform robot position from tag space to field space
         double tagHeadingRad = Math.toRadians(tagFieldHeading);
@@ -217,7 +543,7 @@ public class RobotTeleOp extends LinearOpMode {
         // Transform: rotate robot position by tag heading, then add tag position
         double robotFieldX = tagFieldX + (robotZ * cosTheta - robotX * sinTheta);
         double robotFieldY = tagFieldY + (robotZ * sinTheta + robotX * cosTheta);
-        double robotFieldHeading = tagFieldHeading + robotYaw;
+        double robotFieldHeading = tagFieldHeading + 180.0 + robotYaw;   // yaw 0 = facing the tag
         
         // Normalize heading to -180 to 180
         while (robotFieldHeading > 180) robotFieldHeading -= 360;
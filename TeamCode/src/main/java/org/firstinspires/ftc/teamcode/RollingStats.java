@@ -0,0 +1,69 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.Arrays;
+
+/**
+ * Running statistics for one measured value: mean, variance, min and max over everything
+ * since reset() (Welford's method, so no precision loss over long runs), plus the median
+ * of the last few samples. Fixed-size primitive buffers; add() never allocates.
+ */
+public class RollingStats {
+    private final double[] window;
+    private final double[] sorted;   // scratch for the median
+    private int head = 0, filled = 0;
+
+    private long count = 0;
+    private double mean = 0, m2 = 0;
+    private double min = Double.NaN, max = Double.NaN;
+
+    /**
+     * @param windowSize number of recent samples the median is taken over
+     */
+    public RollingStats(int windowSize) {
+        window = new double[windowSize];
+        sorted = new double[windowSize];
+    }
+
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+        if (count == 1 || x < min) min = x;
+        if (count == 1 || x > max) max = x;
+
+        window[head] = x;
+        head = (head + 1) % window.length;
+        if (filled < window.length) filled++;
+    }
+
+    public void reset() {
+        count = 0;
+        mean = m2 = 0;
+        min = max = Double.NaN;
+        head = filled = 0;
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+
+    // Sample variance (n - 1)
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0.0;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    // Median of the most recent window of samples (NaN if none)
+    public double getMedian() {
+        if (filled == 0) return Double.NaN;
+        System.arraycopy(window, 0, sorted, 0, filled);
+        Arrays.sort(sorted, 0, filled);
+        int mid = filled / 2;
+        return (filled % 2 == 1) ? sorted[mid] : 0.5 * (sorted[mid - 1] + sorted[mid]);
+    }
+}
@@ -0,0 +1,172 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Tag-to-action scripts for AprilTagChallenge, loaded from FIRST/data/routines.txt on the
+ * Control Hub so routines can be changed without rebuilding. One line per tag:
+ * <pre>
+ *   # comment
+ *   21: center 36; wait 2; spin 360; wait 2; strafe 12
+ * </pre>
+ * Actions: center &lt;inches&gt;, wait &lt;seconds&gt;, spin &lt;degrees&gt;, move &lt;inches&gt;, strafe &lt;inches&gt;.
+ *
+ * Scripts are compiled once into flat opcode/argument arrays, so running them allocates nothing.
+ * The compiled result is cached between OpMode runs and only re-read when the file changes.
+ */
+public class Routines {
+    public static final int OP_CENTER = 0;
+    public static final int OP_WAIT = 1;
+    public static final int OP_SPIN = 2;
+    public static final int OP_MOVE = 3;
+    public static final int OP_STRAFE = 4;
+    private static final String[] OP_NAMES = {"center", "wait", "spin", "move", "strafe"};
+
+    public static final int MAX_TAG_ID = 63;
+    private static final int MAX_INSTRUCTIONS = 256;
+
+    public static final File SCRIPT_FILE = new File(AppUtil.ROBOT_DATA_DIR, "routines.txt");
+
+    // Used when there is no script file (or it doesn't parse) - the original challenge routines
+    public static final String DEFAULT_SCRIPT =
+            "21: center 36; wait 2; spin 360; wait 2; strafe 12; wait 2; strafe -24; wait 2; strafe 12\n" +
+            "22: center 36; wait 2; move -12; wait 2; move 24; wait 2; move -12; wait 2; spin 360\n" +
+            "23: center 48; wait 2; spin 15; wait 2; spin -30; wait 2; spin 15; wait 2; center 48\n";
+
+    // Cache across OpMode runs (static state survives until the app restarts)
+    private static Routines cached = null;
+    private static long cachedModified = -1;
+    private static String cachedProblem = null;
+
+    private final int[] ops = new int[MAX_INSTRUCTIONS];
+    private final double[] args = new double[MAX_INSTRUCTIONS];
+    private final int[] start = new int[MAX_TAG_ID + 1];
+    private final int[] length = new int[MAX_TAG_ID + 1];
+    private int size = 0;
+    private String source = "built-in";
+
+    private Routines() {
+    }
+
+    /**
+     * The compiled routines for this run: the script file if it exists and parses, else the defaults.
+     * @param problems receives a description of why the file was not used, if it wasn't (may be null)
+     */
+    public static synchronized Routines load(StringBuilder problems) {
+        long modified = SCRIPT_FILE.exists() ? SCRIPT_FILE.lastModified() : 0L;
+        if (cached == null || modified != cachedModified) {
+            Routines routines = null;
+            cachedProblem = null;
+            if (modified != 0L) {
+                try {
+                    routines = compile(readFile(SCRIPT_FILE));
+                    routines.source = String.format(Locale.US, "%s (%tT)", SCRIPT_FILE.getName(), modified);
+                } catch (IOException | IllegalArgumentException e) {
+                    cachedProblem = SCRIPT_FILE.getName() + ": " + e.getMessage();
+                }
+            }
+            cached = (routines != null) ? routines : compile(DEFAULT_SCRIPT);
+            cachedModified = modified;
+        }
+        if (problems != null && cachedProblem != null) problems.append(cachedProblem);
+        return cached;
+    }
+
+    private static String readFile(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Compile script text.
+     * @throws IllegalArgumentException with the line number if anything doesn't parse
+     */
+    public static Routines compile(String text) {
+        Routines r = new Routines();
+        String[] lines = text.split("\n");
+        for (int n = 0; n < lines.length; n++) {
+            String line = lines[n];
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            int colon = line.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("line " + (n + 1) + ": expected '<tag>: <actions>'");
+            int tag;
+            try {
+                tag = Integer.parseInt(line.substring(0, colon).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("line " + (n + 1) + ": bad tag id");
+            }
+            if (tag < 0 || tag > MAX_TAG_ID) throw new IllegalArgumentException("line " + (n + 1) + ": tag id out of range");
+            if (r.length[tag] > 0) throw new IllegalArgumentException("line " + (n + 1) + ": tag " + tag + " defined twice");
+
+            r.start[tag] = r.size;
+            for (String step : line.substring(colon + 1).split(";")) {
+                step = step.trim();
+                if (step.isEmpty()) continue;
+                String[] words = step.split("\\s+");
+                if (words.length != 2) throw new IllegalArgumentException("line " + (n + 1) + ": expected '<action> <number>', got '" + step + "'");
+                int op = -1;
+                for (int i = 0; i < OP_NAMES.length; i++) {
+                    if (OP_NAMES[i].equalsIgnoreCase(words[0])) op = i;
+                }
+                if (op < 0) throw new IllegalArgumentException("line " + (n + 1) + ": unknown action '" + words[0] + "'");
+                double arg;
+                try {
+                    arg = Double.parseDouble(words[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("line " + (n + 1) + ": bad number '" + words[1] + "'");
+                }
+                if (r.size == MAX_INSTRUCTIONS) throw new IllegalArgumentException("line " + (n + 1) + ": too many actions");
+                r.ops[r.size] = op;
+                r.args[r.size] = arg;
+                r.size++;
+            }
+            r.length[tag] = r.size - r.start[tag];
+        }
+        return r;
+    }
+
+    public boolean has(int tagId) {
+        return tagId >= 0 && tagId <= MAX_TAG_ID && length[tagId] > 0;
+    }
+
+    // First instruction of the tag's routine
+    public int start(int tagId) {
+        return start[tagId];
+    }
+
+    // One past the last instruction of the tag's routine
+    public int end(int tagId) {
+        return start[tagId] + length[tagId];
+    }
+
+    public int op(int pc) {
+        return ops[pc];
+    }
+
+    public double arg(int pc) {
+        return args[pc];
+    }
+
+    public static String opName(int op) {
+        return OP_NAMES[op];
+    }
+
+    // Where these routines came from, for telemetry
+    public String getSource() {
+        return source;
+    }
+}
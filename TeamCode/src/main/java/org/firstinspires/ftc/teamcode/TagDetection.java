@@ -0,0 +1,44 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * One AprilTag sighting, in the same terms no matter which camera produced it.
+ * Angles follow the Limelight convention (tx/ty) and the pose follows
+ * getRobotPoseTargetSpace(), so code written against the Limelight keeps working.
+ * Instances are pooled and overwritten every frame - copy what you need to keep.
+ */
+public class TagDetection {
+    public enum Source { LIMELIGHT, WEBCAM, FUSED }
+
+    public int id = -1;
+    public Source source = Source.LIMELIGHT;
+
+    public double bearingDeg;   // horizontal offset, positive = tag right of center (tx)
+    public double elevationDeg; // vertical offset, positive = tag above center (ty)
+
+    // Robot pose in tag space, meters. Looking at the tag: x to the right, y down, z out of the
+    // tag toward the robot (forward distance). yawDeg is the robot's turn from facing the tag
+    // squarely, CCW positive, so the robot's field heading is the tag's facing heading + 180 + yaw.
+    public boolean hasPose;
+    public double x, y, z;
+    public double yawDeg;
+
+    public double confidence;   // 0 to 1
+    public long timestampNanos; // System.nanoTime() at frame capture
+
+    public void copyFrom(TagDetection other) {
+        id = other.id;
+        source = other.source;
+        bearingDeg = other.bearingDeg;
+        elevationDeg = other.elevationDeg;
+        hasPose = other.hasPose;
+        x = other.x; y = other.y; z = other.z;
+        yawDeg = other.yawDeg;
+        confidence = other.confidence;
+        timestampNanos = other.timestampNanos;
+    }
+
+    // Age of the underlying camera frame, in milliseconds
+    public double ageMs(long nowNanos) {
+        return (nowNanos - timestampNanos) / 1.0e6;
+    }
+}
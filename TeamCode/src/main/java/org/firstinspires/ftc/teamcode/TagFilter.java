@@ -0,0 +1,196 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Rejects outlier tag measurements (e.g. one bad pose from a tag seen at a glancing angle)
+ * before they reach the controllers. Two gates per tag, on bearing, lateral and forward
+ * distance, and yaw:
+ * <ul>
+ *   <li>Hampel: the new value must be within a few MADs of the median of the tag's last few raw values.</li>
+ *   <li>Innovation: the new values, taken together, must be statistically close (Mahalanobis distance)
+ *       to a prediction from the accepted track, with the bearing moved on by the IMU turn rate.</li>
+ * </ul>
+ * A rejected detection has its geometry replaced by the last accepted one, so a controller holds
+ * instead of jumping. After several rejections in a row the track restarts on the new values,
+ * so a genuine jump (or a different tag placement) isn't locked out for good.
+ *
+ * Each new frame costs O(window) per axis; nothing is allocated after a tag is first seen.
+ */
+public class TagFilter {
+    public static final int MAX_TAG_ID = 63;
+
+    private static final int AXES = 4;                  // bearing, x, z, yaw
+    private static final int WINDOW = 9;
+    private static final int MIN_SAMPLES = 5;           // Hampel gate needs this many before it judges
+    private static final double HAMPEL_K = 3.0;
+    private static final double MAD_TO_SIGMA = 1.4826;
+    private static final double[] MAD_FLOOR = {0.5, 0.02, 0.03, 2.0};      // deg, m, m, deg - below this is just noise
+
+    // Innovation gate (per-axis random-walk Kalman filter)
+    private static final double[] MEASUREMENT_VAR = {0.3 * 0.3, 0.02 * 0.02, 0.03 * 0.03, 2.0 * 2.0};
+    private static final double[] PROCESS_VAR_PER_SEC = {400.0, 0.5, 0.5, 400.0}; // how fast each can really change
+    private static final double[] CHI2_99 = {0, 6.63, 9.21, 11.34, 13.28}; // by number of axes checked
+    private static final int MAX_CONSECUTIVE_REJECTS = 5;
+    private static final double STALE_SEC = 0.5;        // gap after which the old history says nothing about now
+
+    /** Per-tag filter state and counters. */
+    private static class Track {
+        // Per axis, since the pose axes only get values from detections with a pose
+        final double[][] window = new double[AXES][WINDOW];
+        final int[] head = new int[AXES];
+        final int[] filled = new int[AXES];
+
+        final double[] estimate = new double[AXES];
+        final double[] variance = new double[AXES];
+        final boolean[] started = new boolean[AXES];
+        long lastFrameNanos = 0L;
+        boolean lastAccepted = true;
+        int consecutiveRejects = 0;
+
+        final TagDetection held = new TagDetection();
+        int accepted = 0, hampelRejects = 0, innovationRejects = 0;
+    }
+
+    private final Track[] tracks = new Track[MAX_TAG_ID + 1];
+    private final double[] values = new double[AXES];
+    private final double[] scratch = new double[WINDOW];
+    private double turnRateDps = 0.0;
+
+    // Robot turn rate (IMU, deg/s CCW), used to predict how the bearing moves between frames
+    public void setTurnRate(double turnRateDps) {
+        this.turnRateDps = turnRateDps;
+    }
+
+    /**
+     * Check a detection. Call once per loop for each detection you are about to use; a frame
+     * already checked gets the same verdict again.
+     * @return true if it is a good measurement; if false, d now holds the tag's last accepted values
+     */
+    public boolean accept(TagDetection d) {
+        if (d.id < 0 || d.id > MAX_TAG_ID) return true;
+        Track t = tracks[d.id];
+        if (t == null) t = tracks[d.id] = new Track();
+
+        if (d.timestampNanos == t.lastFrameNanos) {
+            if (!t.lastAccepted) hold(t, d);
+            return t.lastAccepted;
+        }
+        double dt = (t.lastFrameNanos == 0L) ? 0.0 : Math.max(0.0, (d.timestampNanos - t.lastFrameNanos) / 1.0e9);
+        t.lastFrameNanos = d.timestampNanos;
+        if (dt > STALE_SEC) {
+            for (int a = 0; a < AXES; a++) {
+                t.filled[a] = 0;
+                t.started[a] = false;
+            }
+        }
+
+        int axes = d.hasPose ? AXES : 1;
+        values[0] = d.bearingDeg;
+        values[1] = d.x;
+        values[2] = d.z;
+        values[3] = d.yawDeg;
+
+        boolean hampelOk = hampel(t, axes);
+        boolean innovationOk = hampelOk && innovation(t, axes, dt);
+        push(t, axes);
+
+        boolean ok = hampelOk && innovationOk;
+        if (!ok) {
+            if (++t.consecutiveRejects >= MAX_CONSECUTIVE_REJECTS) {
+                for (int a = 0; a < AXES; a++) t.started[a] = false; // the world really moved - start over from this frame
+                ok = true;
+            } else if (!hampelOk) {
+                t.hampelRejects++;
+            } else {
+                t.innovationRejects++;
+            }
+        }
+
+        if (ok) {
+            correct(t, axes, dt);
+            t.consecutiveRejects = 0;
+            t.accepted++;
+            t.held.copyFrom(d);
+        } else {
+            hold(t, d);
+        }
+        t.lastAccepted = ok;
+        return ok;
+    }
+
+    private boolean hampel(Track t, int axes) {
+        for (int a = 0; a < axes; a++) {
+            int n = t.filled[a];
+            if (n < MIN_SAMPLES) continue;
+            System.arraycopy(t.window[a], 0, scratch, 0, n);
+            double median = median(scratch, n);
+            for (int i = 0; i < n; i++) scratch[i] = Math.abs(t.window[a][i] - median);
+            double mad = Math.max(median(scratch, n), MAD_FLOOR[a]);
+            if (Math.abs(values[a] - median) > HAMPEL_K * MAD_TO_SIGMA * mad) return false;
+        }
+        return true;
+    }
+
+    private boolean innovation(Track t, int axes, double dt) {
+        double d2 = 0;
+        int checked = 0;
+        for (int a = 0; a < axes; a++) {
+            if (!t.started[a]) continue;
+            checked++;
+            double predicted = t.estimate[a] + (a == 0 ? turnRateDps * dt : 0.0);
+            double s = t.variance[a] + PROCESS_VAR_PER_SEC[a] * dt + MEASUREMENT_VAR[a];
+            double nu = values[a] - predicted;
+            d2 += nu * nu / s;
+        }
+        return d2 <= CHI2_99[checked];
+    }
+
+    private void correct(Track t, int axes, double dt) {
+        for (int a = 0; a < axes; a++) {
+            if (!t.started[a]) {
+                t.estimate[a] = values[a];
+                t.variance[a] = MEASUREMENT_VAR[a];
+                t.started[a] = true;
+                continue;
+            }
+            double predicted = t.estimate[a] + (a == 0 ? turnRateDps * dt : 0.0);
+            double p = t.variance[a] + PROCESS_VAR_PER_SEC[a] * dt;
+            double k = p / (p + MEASUREMENT_VAR[a]);
+            t.estimate[a] = predicted + k * (values[a] - predicted);
+            t.variance[a] = (1.0 - k) * p;
+        }
+    }
+
+    // Raw values go into the window whatever the verdict, so the median follows a real change
+    private void push(Track t, int axes) {
+        for (int a = 0; a < axes; a++) {
+            t.window[a][t.head[a]] = values[a];
+            t.head[a] = (t.head[a] + 1) % WINDOW;
+            if (t.filled[a] < WINDOW) t.filled[a]++;
+        }
+    }
+
+    private static void hold(Track t, TagDetection d) {
+        long frame = d.timestampNanos;
+        d.copyFrom(t.held);
+        d.timestampNanos = frame;
+    }
+
+    // Median of the first n values; sorts them in place (insertion sort - n is tiny)
+    private static double median(double[] v, int n) {
+        for (int i = 1; i < n; i++) {
+            double x = v[i];
+            int j = i - 1;
+            while (j >= 0 && v[j] > x) { v[j + 1] = v[j]; j--; }
+            v[j + 1] = x;
+        }
+        return (n % 2 == 1) ? v[n / 2] : 0.5 * (v[n / 2 - 1] + v[n / 2]);
+    }
+
+    public int getAccepted(int id) { return tracks[id] == null ? 0 : tracks[id].accepted; }
+    public int getHampelRejects(int id) { return tracks[id] == null ? 0 : tracks[id].hampelRejects; }
+    public int getInnovationRejects(int id) { return tracks[id] == null ? 0 : tracks[id].innovationRejects; }
+
+    public int getRejects(int id) {
+        return getHampelRejects(id) + getInnovationRejects(id);
+    }
+}
@@ -0,0 +1,166 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+/**
+ * Finds a tag again quickly after it drops out of view. While the tag is visible it remembers
+ * where the tag is relative to the field (direction from IMU heading and tx, plus range when
+ * known); while it isn't, it follows the robot's own turning and driving (from the drive's
+ * pose estimate) to predict the tag's direction now. If the tag doesn't show up at the predicted heading, it searches a
+ * bounded pattern either side of it, then gives up.
+ *
+ * Call update() every loop, onSeen() when the tag is visible, and steer to getTargetHeading()
+ * (or treat getPredictedBearing() as tx) while isSearching().
+ */
+public class TagReacquirer {
+    // Search pattern: offsets from the predicted heading, tried in order (deg, CCW positive)
+    private static final double[] SEARCH_OFFSETS_DEG = {0, 15, -15, 30, -30, 45, -45};
+    private static final double ARRIVE_TOLERANCE_DEG = 4.0;  // counts as "looking there"
+    private static final double DWELL_SEC = 0.25;            // look this long (a few camera frames) before moving on
+    private static final double MAX_STEP_SEC = 1.5;          // move on even if we never got there
+    private static final double MAX_FIX_AGE_SEC = 10.0;      // older than this the prediction isn't worth chasing
+
+    private final RobotClock clock;
+
+    // Tag position relative to where the robot was when last seen, field-aligned inches;
+    // or, without a range, just its field direction
+    private boolean haveFix = false;
+    private boolean haveRange = false;
+    private double tagDirection = 0;      // deg
+    private double tagDx = 0, tagDy = 0;  // inches
+    private long seenNanos = 0L;
+
+    // Robot pose now, and where it was at the fix (field-aligned inches, any origin)
+    private double heading = 0;
+    private double x = 0, y = 0;
+    private double fixX = 0, fixY = 0;
+
+    // Position built from forward distance, for drives without a pose estimate
+    private boolean haveForward = false;
+    private double lastForwardIn = 0;
+    private double forwardX = 0, forwardY = 0;
+
+    // Search
+    private boolean searching = false;
+    private int step = 0;
+    private long stepStartNanos = 0L;
+    private long arrivedNanos = 0L;
+
+    public TagReacquirer(RobotClock clock) {
+        this.clock = clock;
+    }
+
+    public TagReacquirer() {
+        this(RobotClock.SYSTEM);
+    }
+
+    /**
+     * Track robot motion. Call every loop, tag or no tag.
+     * @param headingDeg continuous IMU heading, CCW positive
+     * @param xIn robot position from the drive's pose estimate, field-aligned inches, any origin
+     */
+    public void update(double headingDeg, double xIn, double yIn) {
+        heading = headingDeg;
+        x = xIn;
+        y = yIn;
+
+        if (searching) advanceSearch();
+    }
+
+    /**
+     * update() for a drive that can only go forward and back (tank): the position is built here
+     * from the forward distance along the heading.
+     * @param forwardIn distance driven forward so far (encoders), any origin
+     */
+    public void update(double headingDeg, double forwardIn) {
+        if (haveForward) {
+            double ds = forwardIn - lastForwardIn;
+            double h = Math.toRadians(headingDeg);
+            forwardX += ds * Math.cos(h);
+            forwardY += ds * Math.sin(h);
+        }
+        lastForwardIn = forwardIn;
+        haveForward = true;
+        update(headingDeg, forwardX, forwardY);
+    }
+
+    /**
+     * The tag is in view.
+     * @param bearingDeg tx, positive = tag right of center
+     * @param rangeIn straight-line distance to the tag, or 0 if unknown
+     */
+    public void onSeen(double bearingDeg, double rangeIn) {
+        tagDirection = heading - bearingDeg;
+        haveRange = rangeIn > 0;
+        if (haveRange) {
+            double d = Math.toRadians(tagDirection);
+            tagDx = rangeIn * Math.cos(d);
+            tagDy = rangeIn * Math.sin(d);
+        }
+        fixX = x;
+        fixY = y;
+        haveFix = true;
+        seenNanos = clock.nanoTime();
+        searching = false;
+        step = 0;
+    }
+
+    /**
+     * The tag is not in view and we want it back: start (or continue) the search.
+     * @return false if there is nothing to go on, or the search already ran out
+     */
+    public boolean search() {
+        if (!haveFix || (clock.nanoTime() - seenNanos) / 1.0e9 > MAX_FIX_AGE_SEC || step >= SEARCH_OFFSETS_DEG.length) {
+            searching = false;
+            return false;
+        }
+        if (!searching) {
+            searching = true;
+            step = 0;
+            stepStartNanos = clock.nanoTime();
+            arrivedNanos = 0L;
+        }
+        return true;
+    }
+
+    // Stop searching; the next search() starts the pattern over
+    public void cancel() {
+        searching = false;
+        step = 0;
+    }
+
+    private void advanceSearch() {
+        long now = clock.nanoTime();
+        boolean there = Math.abs(AngleUnit.normalizeDegrees(getTargetHeading() - heading)) < ARRIVE_TOLERANCE_DEG;
+        if (there && arrivedNanos == 0L) arrivedNanos = now;
+        boolean dwelt = arrivedNanos != 0L && (now - arrivedNanos) / 1.0e9 > DWELL_SEC;
+        boolean timedOut = (now - stepStartNanos) / 1.0e9 > MAX_STEP_SEC;
+        if (dwelt || timedOut) {
+            step++;
+            stepStartNanos = now;
+            arrivedNanos = 0L;
+            if (step >= SEARCH_OFFSETS_DEG.length) searching = false; // exhausted until the tag is seen again
+        }
+    }
+
+    // Field direction the tag should be in now, from the last fix plus our own motion since
+    public double getPredictedDirection() {
+        if (!haveRange) return tagDirection;
+        return Math.toDegrees(Math.atan2(tagDy - (y - fixY), tagDx - (x - fixX)));
+    }
+
+    // Heading to turn to: the predicted direction plus the current search offset, near the current heading
+    public double getTargetHeading() {
+        double offset = SEARCH_OFFSETS_DEG[Math.min(step, SEARCH_OFFSETS_DEG.length - 1)];
+        return heading + AngleUnit.normalizeDegrees(getPredictedDirection() + offset - heading);
+    }
+
+    // getTargetHeading() in tx terms (positive = right of center): steer to zero it, as if it were the tag
+    public double getPredictedBearing() {
+        return heading - getTargetHeading();
+    }
+
+    public boolean isSearching() { return searching; }
+    public boolean hasFix() { return haveFix; }
+    public int getSearchStep() { return step; }
+}
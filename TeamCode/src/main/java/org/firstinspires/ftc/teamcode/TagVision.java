@@ -0,0 +1,407 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.util.Size;
+import com.qualcomm.hardware.limelightvision.LLResult;
+import com.qualcomm.hardware.limelightvision.LLResultTypes;
+import com.qualcomm.hardware.limelightvision.Limelight3A;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.util.Range;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+
+import java.util.List;
+
+/**
+ * AprilTag detections from the Limelight ("limelight") and a webcam running the SDK
+ * AprilTagProcessor ("Webcam 1"), either or both. Each update() picks, per tag ID, the
+ * freshest confident sighting, or blends the two when they come from about the same moment.
+ * If one camera drops out the other keeps the detections coming.
+ *
+ * Assumes the webcam is mounted next to the Limelight, facing the same way.
+ *
+ * The Limelight also solves the robot's field pose itself (MegaTag2) when given the robot's
+ * heading: call setRobotYaw() every loop before update(), then getMegaTagPose(). With the
+ * heading known, one tag is enough for a stable position even at range. Needs the field map
+ * uploaded to the Limelight and the camera's mounting pose set in its pipeline; FieldLayout
+ * converts between that map's frame and ours, and keeps MegaTag2 off until they are matched.
+ *
+ * Ages are on the RobotClock given; the webcam stamps its frames with System.nanoTime(), so
+ * with a webcam configured that has to be RobotClock.SYSTEM.
+ */
+public class TagVision {
+    public static final int MAX_TAGS = 8;
+
+    // Webcam pipeline tuning: 640x480 MJPEG keeps USB bandwidth and decode cost low.
+    // Decimation starts at 2 and is then adjusted by VisionTuner.
+    private static final int WEBCAM_WIDTH = 640;
+    private static final int WEBCAM_HEIGHT = 480;
+    private static final float WEBCAM_DECIMATION = 2.0f;
+
+    // Arbitration
+    private static final double MAX_AGE_MS = 150.0;          // older sightings are ignored
+    private static final double FUSE_WINDOW_MS = 60.0;       // closer together than this: blend
+    private static final double MIN_CONFIDENCE = 0.1;
+    private static final double LL_FULL_CONFIDENCE_AREA = 1.0;      // % of image
+    private static final double WEBCAM_FULL_CONFIDENCE_MARGIN = 60.0; // decision margin
+
+    private final RobotClock clock;
+    private final Limelight3A limelight;
+    private final LimelightMonitor limelightMonitor;   // null without a Limelight
+    private final AprilTagProcessor aprilTag;
+    private final VisionPortal visionPortal;
+    private final VisionTuner tuner;
+    private final FrameRecorder recorder;
+
+    // Preallocated pools: per-source sightings and the arbitrated output
+    private final TagDetection[] limelightTags = newPool();
+    private final TagDetection[] webcamTags = newPool();
+    private final TagDetection[] tags = newPool();
+    private int limelightCount = 0, webcamCount = 0, count = 0;
+    private long lastLimelightFrameNanos = 0L, lastWebcamFrameNanos = 0L;
+    private double nearestWebcamRangeM = -1; // range to the closest tag in the last webcam frame
+    private boolean extrasEnabled = true;    // frame recording and camera tuning
+
+    // MegaTag2 field pose from the Limelight
+    private static final double MT2_MAX_TURN_DPS = 360.0;    // turning faster, the yaw it used may not match the frame
+    private static final double SAME_FRAME_MS = 3.0;        // staleness is whole ms; frames are 10+ ms apart
+    private static final double INCHES_PER_METER = 39.3701;
+    private final Odometry.Pose megaTagPose = new Odometry.Pose();
+    private final RollingStats megaTagLatency = new RollingStats(50);  // capture to arrival, ms
+    private boolean haveMegaTagPose = false;
+    private boolean yawSent = false;
+    private int megaTagTagCount = 0, megaTagFrames = 0, megaTagRejects = 0;
+    private double megaTagAvgDistIn = 0.0;
+    private double turnRateDps = 0.0;
+
+    public TagVision(HardwareMap hardwareMap, RobotClock clock) {
+        this.clock = clock;
+        limelight = hardwareMap.tryGet(Limelight3A.class, "limelight");
+        limelightMonitor = (limelight != null) ? new LimelightMonitor(limelight, clock) : null;
+
+        WebcamName webcam = hardwareMap.tryGet(WebcamName.class, "Webcam 1");
+        if (webcam != null) {
+            aprilTag = new AprilTagProcessor.Builder()
+                    .setDrawAxes(false)
+                    .setDrawCubeProjection(false)
+                    .setOutputUnits(DistanceUnit.METER, AngleUnit.DEGREES)
+                    .build();
+            aprilTag.setDecimation(WEBCAM_DECIMATION);
+            recorder = new FrameRecorder();
+            visionPortal = new VisionPortal.Builder()
+                    .setCamera(webcam)
+                    .setCameraResolution(new Size(WEBCAM_WIDTH, WEBCAM_HEIGHT))
+                    .setStreamFormat(VisionPortal.StreamFormat.MJPEG)
+                    .enableLiveView(false)
+                    .addProcessor(aprilTag)
+                    .addProcessor(recorder)
+                    .build();
+            tuner = new VisionTuner(visionPortal, aprilTag, clock);
+        } else {
+            aprilTag = null;
+            visionPortal = null;
+            tuner = null;
+            recorder = null;
+        }
+    }
+
+    public TagVision(HardwareMap hardwareMap) {
+        this(hardwareMap, RobotClock.SYSTEM);
+    }
+
+    private static TagDetection[] newPool() {
+        TagDetection[] pool = new TagDetection[MAX_TAGS];
+        for (int i = 0; i < MAX_TAGS; i++) pool[i] = new TagDetection();
+        return pool;
+    }
+
+    public void start() {
+        if (limelightMonitor != null) limelightMonitor.start(0);
+    }
+
+    public void stop() {
+        if (limelightMonitor != null) limelightMonitor.stop();
+        if (visionPortal != null) visionPortal.close();
+        if (recorder != null) recorder.close();
+    }
+
+    /**
+     * Read both cameras and rebuild the detection list.
+     * @return number of tags currently detected
+     */
+    public int update() {
+        return update(0.0);
+    }
+
+    /**
+     * As update(), also letting the webcam tuner know how fast the robot is turning.
+     * @param turnRateDps robot turn rate from the IMU, degrees per second
+     */
+    public int update(double turnRateDps) {
+        long now = clock.nanoTime();
+        this.turnRateDps = turnRateDps;
+        if (limelight != null) readLimelight(now);
+        if (aprilTag != null) {
+            readWebcam();
+            if (extrasEnabled) tuner.update(nearestWebcamRangeM, turnRateDps);
+        }
+
+        count = 0;
+        // Everything the Limelight saw, merged with the webcam's view of the same tag
+        for (int i = 0; i < limelightCount; i++) {
+            TagDetection ll = usable(limelightTags[i], now);
+            if (ll == null) continue;
+            TagDetection cam = usable(findIn(webcamTags, webcamCount, ll.id), now);
+            arbitrate(ll, cam, tags[count++]);
+            if (count == MAX_TAGS) return count;
+        }
+        // Tags only the webcam saw
+        for (int i = 0; i < webcamCount && count < MAX_TAGS; i++) {
+            TagDetection cam = usable(webcamTags[i], now);
+            if (cam == null || findIn(tags, count, cam.id) != null) continue;
+            tags[count++].copyFrom(cam);
+        }
+        return count;
+    }
+
+    /**
+     * Turn the non-critical webcam work (frame recording, camera tuning) off or back on,
+     * leaving tag detection running. For shedding load when the control loop is overrunning.
+     */
+    public void setExtrasEnabled(boolean enabled) {
+        if (enabled == extrasEnabled) return;
+        extrasEnabled = enabled;
+        if (visionPortal != null) visionPortal.setProcessorEnabled(recorder, enabled);
+    }
+
+    private void readLimelight(long now) {
+        LLResult result = limelight.getLatestResult();
+        limelightCount = 0;
+        if (result == null || !result.isValid()) return;
+        // Staleness is time since the result arrived; the latencies cover capture to arrival
+        double ageMs = result.getStaleness() + result.getCaptureLatency() + result.getTargetingLatency();
+        long frameNanos = now - (long) (ageMs * 1.0e6);
+        if (Math.abs(frameNanos - lastLimelightFrameNanos) / 1.0e6 <= SAME_FRAME_MS) {
+            // Same frame as last time, give or take staleness rounding: keep its timestamp so
+            // downstream (TagFilter) sees one frame, not a new one each loop
+            frameNanos = lastLimelightFrameNanos;
+        } else {
+            megaTagLatency.add(result.getCaptureLatency() + result.getTargetingLatency());
+            readMegaTag(result, frameNanos);
+            lastLimelightFrameNanos = frameNanos;
+        }
+
+        List<LLResultTypes.FiducialResult> fiducials = result.getFiducialResults();
+        if (fiducials == null) return;
+        for (LLResultTypes.FiducialResult f : fiducials) {
+            if (limelightCount == MAX_TAGS) break;
+            TagDetection d = limelightTags[limelightCount++];
+            d.id = f.getFiducialId();
+            d.source = TagDetection.Source.LIMELIGHT;
+            d.bearingDeg = f.getTargetXDegrees();
+            d.elevationDeg = f.getTargetYDegrees();
+            Pose3D robotPose = f.getRobotPoseTargetSpace();
+            d.hasPose = robotPose != null;
+            if (d.hasPose) {
+                d.x = robotPose.getPosition().x;
+                d.y = robotPose.getPosition().y;
+                d.z = robotPose.getPosition().z;
+                d.yawDeg = robotPose.getOrientation().getYaw(AngleUnit.DEGREES);
+            }
+            d.confidence = Range.clip(f.getTargetArea() / LL_FULL_CONFIDENCE_AREA, 0.0, 1.0);
+            d.timestampNanos = frameNanos;
+        }
+    }
+
+    private void readMegaTag(LLResult result, long frameNanos) {
+        if (!yawSent) return;
+        Pose3D pose = result.getBotpose_MT2();
+        int tagCount = result.getBotposeTagCount();
+        if (pose == null || tagCount == 0) return;
+        if (Math.abs(turnRateDps) > MT2_MAX_TURN_DPS) {
+            megaTagRejects++;
+            return;
+        }
+        FieldLayout.fromLimelight(pose.getPosition().x, pose.getPosition().y,
+                pose.getOrientation().getYaw(AngleUnit.DEGREES), megaTagPose);
+        megaTagPose.vx = megaTagPose.vy = megaTagPose.headingRate = 0.0;
+        megaTagPose.timestampNanos = frameNanos;
+        megaTagTagCount = tagCount;
+        megaTagAvgDistIn = result.getBotposeAvgDist() * INCHES_PER_METER;
+        megaTagFrames++;
+        haveMegaTagPose = true;
+    }
+
+    private void readWebcam() {
+        List<AprilTagDetection> fresh = aprilTag.getFreshDetections();
+        if (fresh == null) return; // no new frame since last time - keep the previous sightings (they age out)
+        lastWebcamFrameNanos = clock.nanoTime();
+        webcamCount = 0;
+        nearestWebcamRangeM = -1;
+        for (AprilTagDetection a : fresh) {
+            if (webcamCount == MAX_TAGS) break;
+            TagDetection d = webcamTags[webcamCount++];
+            d.id = a.id;
+            d.source = TagDetection.Source.WEBCAM;
+            d.timestampNanos = a.frameAcquisitionNanoTime;
+            d.confidence = Range.clip(a.decisionMargin / WEBCAM_FULL_CONFIDENCE_MARGIN, 0.0, 1.0);
+            d.hasPose = a.metadata != null && a.ftcPose != null;
+            if (d.hasPose) {
+                d.bearingDeg = -a.ftcPose.bearing;   // ftcPose bearing is CCW, tx is positive right
+                d.elevationDeg = a.ftcPose.elevation;
+                setPoseFromFtcPose(d, a.ftcPose.x, a.ftcPose.y, a.ftcPose.z, a.ftcPose.yaw);
+                if (nearestWebcamRangeM < 0 || a.ftcPose.range < nearestWebcamRangeM) nearestWebcamRangeM = a.ftcPose.range;
+            } else {
+                d.bearingDeg = 0;
+                d.elevationDeg = 0;
+                d.confidence = 0; // unknown tag, no geometry to offer
+            }
+        }
+    }
+
+    /**
+     * Turn ftcPose (the tag relative to the camera: x right, y forward, z up, meters; yaw the
+     * tag's turn CCW from facing the camera squarely) around into the robot relative to the tag,
+     * in TagDetection's tag space. The position is rotated by the tag's yaw, not just negated.
+     */
+    static void setPoseFromFtcPose(TagDetection d, double x, double y, double z, double yawDeg) {
+        double yaw = Math.toRadians(yawDeg);
+        double cos = Math.cos(yaw), sin = Math.sin(yaw);
+        d.x = -x * cos - y * sin;
+        d.z = -x * sin + y * cos;
+        d.y = z;   // camera below the tag: positive (tag space y is down)
+        d.yawDeg = -yawDeg;
+    }
+
+    private static TagDetection usable(TagDetection d, long now) {
+        if (d == null || d.confidence < MIN_CONFIDENCE || d.ageMs(now) > MAX_AGE_MS) return null;
+        return d;
+    }
+
+    private static TagDetection findIn(TagDetection[] pool, int n, int id) {
+        for (int i = 0; i < n; i++) {
+            if (pool[i].id == id) return pool[i];
+        }
+        return null;
+    }
+
+    // Pick the newer sighting, or blend the two by confidence if they are from about the same frame time
+    static void arbitrate(TagDetection ll, TagDetection cam, TagDetection out) {
+        if (cam == null) { out.copyFrom(ll); return; }
+        double apartMs = Math.abs(ll.timestampNanos - cam.timestampNanos) / 1.0e6;
+        if (apartMs > FUSE_WINDOW_MS) {
+            out.copyFrom(ll.timestampNanos > cam.timestampNanos ? ll : cam);
+            return;
+        }
+        double wl = ll.confidence, wc = cam.confidence, sum = wl + wc;
+        out.id = ll.id;
+        out.source = TagDetection.Source.FUSED;
+        out.bearingDeg = (ll.bearingDeg * wl + cam.bearingDeg * wc) / sum;
+        out.elevationDeg = (ll.elevationDeg * wl + cam.elevationDeg * wc) / sum;
+        if (ll.hasPose && cam.hasPose) {
+            out.hasPose = true;
+            out.x = (ll.x * wl + cam.x * wc) / sum;
+            out.y = (ll.y * wl + cam.y * wc) / sum;
+            out.z = (ll.z * wl + cam.z * wc) / sum;
+            // Blend as angles, so -179 and 179 average to 180, not 0
+            out.yawDeg = AngleUnit.normalizeDegrees(ll.yawDeg + wc / sum * AngleUnit.normalizeDegrees(cam.yawDeg - ll.yawDeg));
+        } else {
+            TagDetection withPose = ll.hasPose ? ll : cam;
+            out.hasPose = withPose.hasPose;
+            out.x = withPose.x; out.y = withPose.y; out.z = withPose.z;
+            out.yawDeg = withPose.yawDeg;
+        }
+        out.confidence = Math.max(wl, wc);
+        out.timestampNanos = Math.max(ll.timestampNanos, cam.timestampNanos);
+    }
+
+    /**
+     * Give the Limelight the robot's field heading for MegaTag2. Call every loop, before update().
+     * Does nothing until FieldLayout.LIMELIGHT_MAP_MATCHES, so no MegaTag2 pose is produced either.
+     * @param fieldHeadingDeg heading in the FieldLayout frame, CCW positive (continuous is fine)
+     */
+    public void setRobotYaw(double fieldHeadingDeg) {
+        if (!isMegaTagAvailable()) return;
+        limelight.updateRobotOrientation(FieldLayout.toLimelightYaw(fieldHeadingDeg));
+        yawSent = true;
+    }
+
+    // MegaTag2 needs a Limelight and FieldLayout matched to its field map
+    public boolean isMegaTagAvailable() {
+        return limelight != null && FieldLayout.LIMELIGHT_MAP_MATCHES;
+    }
+
+    /**
+     * The Limelight's MegaTag2 field pose (inches, in the FieldLayout frame), if it is recent.
+     * @return false if there is none younger than the detection age limit
+     */
+    public boolean getMegaTagPose(Odometry.Pose out) {
+        if (!haveMegaTagPose || (clock.nanoTime() - megaTagPose.timestampNanos) / 1.0e6 > MAX_AGE_MS) return false;
+        out.copyFrom(megaTagPose);
+        return true;
+    }
+
+    // Age of the last MegaTag2 pose (from frame capture), or -1 if there hasn't been one
+    public double getMegaTagAgeMs() {
+        return haveMegaTagPose ? (clock.nanoTime() - megaTagPose.timestampNanos) / 1.0e6 : -1;
+    }
+
+    // Limelight capture-to-arrival latency over recent frames
+    public RollingStats getLimelightLatency() {
+        return megaTagLatency;
+    }
+
+    public int getMegaTagTagCount() { return megaTagTagCount; }
+    public double getMegaTagAvgDistIn() { return megaTagAvgDistIn; }
+    public int getMegaTagFrames() { return megaTagFrames; }
+    public int getMegaTagRejects() { return megaTagRejects; }
+
+    public int getCount() {
+        return count;
+    }
+
+    public TagDetection get(int i) {
+        return tags[i];
+    }
+
+    // Detection for this tag ID from the last update(), or null
+    public TagDetection find(int id) {
+        return findIn(tags, count, id);
+    }
+
+    // Limelight health (state, fps, time to first frame), or null without a Limelight
+    public LimelightMonitor getLimelightMonitor() {
+        return limelightMonitor;
+    }
+
+    public boolean hasLimelight() {
+        return limelight != null;
+    }
+
+    public boolean hasWebcam() {
+        return aprilTag != null;
+    }
+
+    // Webcam frame history for post-match debugging, or null without a webcam
+    public FrameRecorder getRecorder() {
+        return recorder;
+    }
+
+    // Webcam settings controller, or null without a webcam
+    public VisionTuner getTuner() {
+        return tuner;
+    }
+
+    // Milliseconds since each camera last produced a frame, or -1 if it never has
+    public double getLimelightAgeMs() {
+        return lastLimelightFrameNanos == 0L ? -1 : (clock.nanoTime() - lastLimelightFrameNanos) / 1.0e6;
+    }
+
+    public double getWebcamAgeMs() {
+        return lastWebcamFrameNanos == 0L ? -1 : (clock.nanoTime() - lastWebcamFrameNanos) / 1.0e6;
+    }
+}
@@ -0,0 +1,232 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.content.Context;
+import com.qualcomm.robotcore.util.RobotLog;
+import com.qualcomm.robotcore.util.WebHandlerManager;
+import fi.iki.elonen.NanoHTTPD;
+import org.firstinspires.ftc.ftccommon.external.WebHandlerRegistrar;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Gains and limits that can be changed while an OpMode runs, without a rebuild. Each one is
+ * declared where the constant used to be:
+ * <pre>
+ *   private static final Tuning.Param TURN_GAIN = Tuning.define("challenge.turnGain", 0.025, 0, 0.2);
+ *   ...
+ *   Tuning.Snapshot tuning = Tuning.current();  // once per loop
+ *   double turn = error * tuning.get(TURN_GAIN);
+ * </pre>
+ * Values are changed from the web page at http://192.168.43.1:8080/tuning, or by editing
+ * FIRST/data/tuning.txt ("name = value" lines), which is watched for changes. The page's Save
+ * writes the current values to that file so they are kept across restarts.
+ *
+ * Every change builds a new immutable Snapshot and swaps it in with one volatile write, so the
+ * control loop reads a consistent set of values with no locking. A parameter shows up on the
+ * page once the class that defines it has loaded (its OpMode has been run).
+ */
+public class Tuning {
+    public static final File FILE = new File(AppUtil.ROBOT_DATA_DIR, "tuning.txt");
+    private static final long WATCH_INTERVAL_MS = 500;
+
+    /** A tunable value. Only its position in the snapshot is used at run time. */
+    public static final class Param {
+        public final String name;
+        public final double defaultValue, min, max;
+        final int index;
+
+        private Param(String name, int index, double defaultValue, double min, double max) {
+            this.name = name;
+            this.index = index;
+            this.defaultValue = defaultValue;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /** One consistent set of values. Immutable; take a new one each loop to pick up changes. */
+    public static final class Snapshot {
+        public final int version;
+        private final double[] values;
+
+        private Snapshot(int version, double[] values) {
+            this.version = version;
+            this.values = values;
+        }
+
+        public double get(Param p) {
+            return values[p.index];
+        }
+    }
+
+    private static final List<Param> params = new ArrayList<>();
+    private static final Map<String, Double> fromFile = new HashMap<>();  // file values, including not-yet-defined names
+    private static volatile Snapshot current = new Snapshot(0, new double[0]);
+    private static long fileModified = 0L;
+    private static Thread watcher = null;
+
+    private Tuning() {
+    }
+
+    // The values to use now
+    public static Snapshot current() {
+        return current;
+    }
+
+    /**
+     * Declare a parameter. Call from a static initializer; defining the same name again returns
+     * the existing one.
+     */
+    public static synchronized Param define(String name, double defaultValue, double min, double max) {
+        for (Param p : params) {
+            if (p.name.equals(name)) return p;
+        }
+        if (watcher == null) {
+            checkFile();
+            startWatcher();
+        }
+        Param p = new Param(name, params.size(), defaultValue, min, max);
+        params.add(p);
+        double[] values = new double[params.size()];
+        System.arraycopy(current.values, 0, values, 0, current.values.length);
+        Double saved = fromFile.get(name);
+        values[p.index] = (saved != null && inRange(p, saved)) ? saved : defaultValue;
+        current = new Snapshot(current.version + 1, values);
+        return p;
+    }
+
+    /**
+     * Change a value.
+     * @return null if done, otherwise why not
+     */
+    public static synchronized String set(String name, double value) {
+        Param p = find(name);
+        if (p == null) return "no parameter " + name;
+        if (!inRange(p, value)) return String.format(Locale.US, "%s must be between %s and %s", name, p.min, p.max);
+        double[] values = current.values.clone();
+        values[p.index] = value;
+        current = new Snapshot(current.version + 1, values);
+        return null;
+    }
+
+    // Write every current value to the file
+    public static synchronized void save() throws IOException {
+        try (PrintWriter out = new PrintWriter(FILE)) {
+            out.println("# name = value (saved from the tuning page)");
+            Snapshot s = current;
+            for (Param p : params) {
+                out.printf(Locale.US, "%s = %s%n", p.name, s.values[p.index]);
+                fromFile.put(p.name, s.values[p.index]);
+            }
+            if (out.checkError()) throw new IOException("write failed");
+        }
+        fileModified = FILE.lastModified();
+    }
+
+    private static Param find(String name) {
+        for (Param p : params) {
+            if (p.name.equals(name)) return p;
+        }
+        return null;
+    }
+
+    private static boolean inRange(Param p, double value) {
+        return value >= p.min && value <= p.max;
+    }
+
+    private static void startWatcher() {
+        watcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                checkFile();
+                try {
+                    Thread.sleep(WATCH_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "Tuning");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Apply the file if it changed. Lines that don't parse, or are out of range, are logged and skipped.
+    private static synchronized void checkFile() {
+        long modified = FILE.exists() ? FILE.lastModified() : 0L;
+        if (modified == fileModified) return;
+        fileModified = modified;
+        if (modified == 0L) return;
+        try (BufferedReader in = new BufferedReader(new FileReader(FILE))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int eq = line.indexOf('=');
+                try {
+                    if (eq < 0) throw new NumberFormatException("no '='");
+                    String name = line.substring(0, eq).trim();
+                    double value = Double.parseDouble(line.substring(eq + 1).trim());
+                    fromFile.put(name, value);
+                    String problem = (find(name) != null) ? set(name, value) : null;
+                    if (problem != null) RobotLog.ww("Tuning", "%s: %s", FILE.getName(), problem);
+                } catch (NumberFormatException e) {
+                    RobotLog.ww("Tuning", "%s: can't read \"%s\"", FILE.getName(), line);
+                }
+            }
+        } catch (IOException e) {
+            RobotLog.ee("Tuning", e, "could not read %s", FILE.getName());
+        }
+    }
+
+    @WebHandlerRegistrar
+    public static void attachWebHandlers(Context context, WebHandlerManager manager) {
+        manager.register("/tuning", session -> NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "text/html", page()));
+        manager.register("/tuning/set", session -> {
+            Map<String, String> parms = session.getParms();
+            String problem;
+            try {
+                problem = set(String.valueOf(parms.get("name")), Double.parseDouble(String.valueOf(parms.get("value"))));
+            } catch (NumberFormatException e) {
+                problem = "value must be a number";
+            }
+            return NanoHTTPD.newFixedLengthResponse(problem == null ? NanoHTTPD.Response.Status.OK : NanoHTTPD.Response.Status.BAD_REQUEST,
+                    "text/plain", problem == null ? "ok" : problem);
+        });
+        manager.register("/tuning/save", session -> {
+            try {
+                save();
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "text/plain", "saved to " + FILE.getName());
+            } catch (IOException e) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "text/plain", e.getMessage());
+            }
+        });
+    }
+
+    // One row per parameter; each edit is sent as soon as it is made
+    private static synchronized String page() {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html><head><title>Tuning</title><style>body{font-family:monospace;margin:1em}td{padding:0 1em 0 0}</style>")
+            .append("<script>function set(n,v){fetch('/tuning/set?name='+encodeURIComponent(n)+'&value='+encodeURIComponent(v))")
+            .append(".then(function(r){return r.text();}).then(function(t){document.getElementById('st').textContent=n+': '+t;});}")
+            .append("function save(){fetch('/tuning/save').then(function(r){return r.text();}).then(function(t){document.getElementById('st').textContent=t;});}</script>")
+            .append("</head><body><h3>Tuning (v").append(current.version).append(")</h3><table><tr><th>Name</th><th>Value</th><th>Range</th><th>Default</th></tr>");
+        Snapshot s = current;
+        for (Param p : params) {
+            html.append(String.format(Locale.US,
+                    "<tr><td>%s</td><td><input value=\"%s\" size=8 onchange=\"set('%s',this.value)\"></td><td>%s to %s</td><td>%s</td></tr>",
+                    p.name, s.values[p.index], p.name, p.min, p.max, p.defaultValue));
+        }
+        if (params.isEmpty()) html.append("<tr><td colspan=4>Nothing defined yet - run an OpMode first</td></tr>");
+        html.append("</table><p><button onclick=save()>Save to ").append(FILE.getName()).append("</button> <span id=st></span></p></body></html>");
+        return html.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.PIDFCoefficients;
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * Drives the mecanum wheels at commanded speeds instead of powers, so the robot moves the same whatever
+ * the battery, friction or load. Two ways to close the loop, for comparison:
+ * <ul>
+ *   <li>HUB: DcMotorEx.setVelocity(), with the hub's own PIDF running at its internal rate.</li>
+ *   <li>SOFTWARE: a feedforward + PI loop here, run once per OpMode loop on the measured
+ *       velocity (bulk read - see DriveHealth), with the feedforward scaled for battery voltage.</li>
+ * </ul>
+ * Gains are Tuning parameters ("velocity.*"). All four wheels run the same loop; the motor
+ * directions must be set first, so that getVelocity() reads positive going forward on every wheel.
+ *
+ * Wheel order is FL, FR, BL, BR, as in DriveHealth. Speeds are inches/sec, positive = forward.
+ */
+public class VelocityDrive {
+    public enum Mode { HUB, SOFTWARE }
+
+    private static final String[] NAMES = {"frontLeft", "frontRight", "backLeft", "backRight"};
+
+    public static final double TRACK_WIDTH_IN = 15.0;    // left to right wheel centers - measure
+    public static final double WHEEL_BASE_IN = 13.0;     // front to back wheel centers - measure
+    public static final double MAX_WHEEL_IPS = 60.0;     // a little under free speed (~67 in/s) to leave room to correct
+
+    // Hub PIDF (REV recipe: F = 32767 / max ticks per second, P = F / 10, I = P / 10)
+    private static final Tuning.Param HUB_P = Tuning.define("velocity.hubP", 1.2, 0, 50);
+    private static final Tuning.Param HUB_I = Tuning.define("velocity.hubI", 0.12, 0, 10);
+    private static final Tuning.Param HUB_D = Tuning.define("velocity.hubD", 0.0, 0, 10);
+    private static final Tuning.Param HUB_F = Tuning.define("velocity.hubF", 11.7, 0, 50);
+
+    // Software loop, powers at nominal battery voltage
+    private static final Tuning.Param SW_KV = Tuning.define("velocity.kV", 0.0149, 0, 0.05);   // power per in/s
+    private static final Tuning.Param SW_KS = Tuning.define("velocity.kS", 0.05, 0, 0.3);      // power to break stiction
+    private static final Tuning.Param SW_KP = Tuning.define("velocity.kP", 0.004, 0, 0.1);     // power per in/s of error
+    private static final Tuning.Param SW_KI = Tuning.define("velocity.kI", 0.02, 0, 0.5);      // power per inch of error
+    private static final double MAX_INTEGRAL_POWER = 0.2;
+
+    private final DcMotorEx[] motors = new DcMotorEx[4];
+    private final boolean[] onHub = new boolean[4];
+    private final Mode mode;
+    private final VoltageCompensator voltage;   // may be null
+    private final RobotClock clock;
+
+    private final double[] target = new double[4];     // in/s
+    private final double[] measured = new double[4];   // in/s
+    private final double[] integral = new double[4];   // power
+    private final double[] power = new double[4];      // last software-loop output
+    private final MecanumKinematics kinematics = new MecanumKinematics(TRACK_WIDTH_IN, WHEEL_BASE_IN);
+    private final double[] chassis = new double[4];
+    private int hubGainsVersion = -1;
+    private long lastNanos = 0L;
+
+    /**
+     * Take over the drive motors (their directions must already be set).
+     * @param voltage scales the software loop's feedforward; may be null
+     */
+    public VelocityDrive(HardwareMap hardwareMap, Mode mode, VoltageCompensator voltage, RobotClock clock) {
+        this.mode = mode;
+        this.voltage = voltage;
+        this.clock = clock;
+        for (int i = 0; i < 4; i++) {
+            motors[i] = hardwareMap.get(DcMotorEx.class, NAMES[i]);
+            onHub[i] = mode == Mode.HUB;
+            motors[i].setMode(onHub[i] ? DcMotor.RunMode.RUN_USING_ENCODER : DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        }
+    }
+
+    /**
+     * Chassis command (mecanum).
+     * @param forwardIps forward speed
+     * @param leftIps sideways speed, positive = left
+     * @param degPerSec turn rate, CCW positive
+     */
+    public void drive(double forwardIps, double leftIps, double degPerSec) {
+        kinematics.inverse(forwardIps, leftIps, degPerSec, chassis);
+        setWheelSpeeds(chassis[0], chassis[1], chassis[2], chassis[3]);
+    }
+
+    /**
+     * Per-wheel command; call once per loop (the software loop steps on each call).
+     * Speeds beyond MAX_WHEEL_IPS are scaled down together, so the robot keeps its curvature.
+     */
+    public void setWheelSpeeds(double frontLeft, double frontRight, double backLeft, double backRight) {
+        target[0] = frontLeft;
+        target[1] = frontRight;
+        target[2] = backLeft;
+        target[3] = backRight;
+        MecanumKinematics.desaturate(target, MAX_WHEEL_IPS);
+
+        long now = clock.nanoTime();
+        double dt = (lastNanos == 0L) ? 0.0 : Math.min(0.1, (now - lastNanos) / 1.0e9);
+        lastNanos = now;
+        Tuning.Snapshot tuning = Tuning.current();
+        if (mode == Mode.HUB && tuning.version != hubGainsVersion) applyHubGains(tuning);
+
+        for (int i = 0; i < 4; i++) {
+            measured[i] = motors[i].getVelocity() / DriveEncoders.TICKS_PER_INCH;
+            if (onHub[i]) {
+                motors[i].setVelocity(target[i] * DriveEncoders.TICKS_PER_INCH);
+                continue;
+            }
+            double error = target[i] - measured[i];
+            double feedforward = MecanumKinematics.feedforward(target[i], tuning.get(SW_KV), tuning.get(SW_KS));
+            if (voltage != null) feedforward = voltage.compensate(feedforward);
+            double out = feedforward + tuning.get(SW_KP) * error + integral[i];
+            // Integrate only while the output isn't pinned, and forget it when stopping
+            if (target[i] == 0) integral[i] = 0;
+            else if (Math.abs(out) < 1.0) integral[i] = Range.clip(integral[i] + tuning.get(SW_KI) * error * dt, -MAX_INTEGRAL_POWER, MAX_INTEGRAL_POWER);
+            power[i] = Range.clip(out, -1.0, 1.0);
+            motors[i].setPower(power[i]);
+        }
+    }
+
+    public void stop() {
+        setWheelSpeeds(0, 0, 0, 0);
+    }
+
+    private void applyHubGains(Tuning.Snapshot tuning) {
+        PIDFCoefficients pidf = new PIDFCoefficients(tuning.get(HUB_P), tuning.get(HUB_I), tuning.get(HUB_D), tuning.get(HUB_F));
+        for (int i = 0; i < 4; i++) {
+            if (onHub[i]) motors[i].setPIDFCoefficients(DcMotor.RunMode.RUN_USING_ENCODER, pidf);
+        }
+        hubGainsVersion = tuning.version;
+    }
+
+    // Put the motors back to plain power control
+    public void release() {
+        for (int i = 0; i < 4; i++) {
+            motors[i].setPower(0);
+            motors[i].setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        }
+    }
+
+    public Mode getMode() { return mode; }
+    public boolean isOnHub(int wheel) { return onHub[wheel]; }
+    public double getTarget(int wheel) { return target[wheel]; }
+    public double getMeasured(int wheel) { return measured[wheel]; }
+}
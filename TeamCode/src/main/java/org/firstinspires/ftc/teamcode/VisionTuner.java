@@ -0,0 +1,138 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.Range;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.ExposureControl;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.GainControl;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop webcam settings for AprilTag processing.
+ * Decimation follows the range to the nearest tag seen in the last frame (close tags are big,
+ * so the image can be decimated harder), nudged up or down to keep the camera fps in a band.
+ * Exposure is cut (and gain raised to compensate) while the robot is turning fast, to limit motion blur.
+ * Settings are only sent to the camera when they change.
+ */
+public class VisionTuner {
+    // Decimation by range (meters), with hysteresis so it doesn't flicker at a boundary
+    private static final double[] RANGE_STEPS_M = {0.9, 1.8};   // closer than these: decimation 3, 2; else 1
+    private static final double RANGE_HYSTERESIS_M = 0.1;
+    private static final int SEARCH_DECIMATION = 2;               // no tag in view
+    private static final int MIN_DECIMATION = 1;
+    private static final int MAX_DECIMATION = 4;
+
+    // Frame rate band
+    private static final double TARGET_FPS_MIN = 20.0;
+    private static final double TARGET_FPS_MAX = 28.0;
+    private static final long DECIMATION_HOLD_MS = 500;           // let fps settle before changing again
+
+    // Exposure (ConceptAprilTagOptimizeExposure is the way to find good values for these)
+    private static final int NORMAL_EXPOSURE_MS = 6;
+    private static final int FAST_TURN_EXPOSURE_MS = 2;
+    private static final int NORMAL_GAIN = 250;
+    private static final double FAST_TURN_DPS = 90.0;
+    private static final double SLOW_TURN_DPS = 60.0;             // back to normal below this
+
+    private final VisionPortal portal;
+    private final AprilTagProcessor aprilTag;
+    private final RobotClock clock;
+
+    private int rangeDecimation = SEARCH_DECIMATION;
+    private int fpsBias = 0;
+    private int decimation = -1;
+    private long lastDecimationChangeNanos = 0L;
+
+    private boolean controlsReady = false;
+    private boolean fastTurnMode = false;
+    private int exposureMs = -1;
+    private int gain = -1;
+    private int minExposureMs, maxExposureMs, minGain, maxGain;
+
+    public VisionTuner(VisionPortal portal, AprilTagProcessor aprilTag, RobotClock clock) {
+        this.portal = portal;
+        this.aprilTag = aprilTag;
+        this.clock = clock;
+    }
+
+    public VisionTuner(VisionPortal portal, AprilTagProcessor aprilTag) {
+        this(portal, aprilTag, RobotClock.SYSTEM);
+    }
+
+    /**
+     * @param nearestRangeM range to the closest tag in the last frame, or negative if none
+     * @param turnRateDps current robot turn rate from the IMU, degrees per second
+     */
+    public void update(double nearestRangeM, double turnRateDps) {
+        updateDecimation(nearestRangeM);
+        updateExposure(Math.abs(turnRateDps));
+    }
+
+    private void updateDecimation(double nearestRangeM) {
+        if (nearestRangeM < 0) {
+            rangeDecimation = SEARCH_DECIMATION;
+        } else {
+            // Step up/down only once past the boundary by the hysteresis margin
+            int byRange = 1;
+            for (int i = 0; i < RANGE_STEPS_M.length; i++) {
+                int level = RANGE_STEPS_M.length + 1 - i;  // 3, 2
+                double step = RANGE_STEPS_M[i] + (rangeDecimation >= level ? RANGE_HYSTERESIS_M : -RANGE_HYSTERESIS_M);
+                if (nearestRangeM < step) { byRange = level; break; }
+            }
+            rangeDecimation = byRange;
+        }
+
+        boolean holdOver = clock.nanoTime() - lastDecimationChangeNanos >= DECIMATION_HOLD_MS * 1_000_000L;
+        if (holdOver) {
+            double fps = portal.getFps();
+            if (fps > 0 && fps < TARGET_FPS_MIN && rangeDecimation + fpsBias < MAX_DECIMATION) fpsBias++;
+            else if (fps > TARGET_FPS_MAX && fpsBias > 0) fpsBias--;
+        }
+
+        int wanted = Range.clip(rangeDecimation + fpsBias, MIN_DECIMATION, MAX_DECIMATION);
+        if (wanted != decimation && (decimation < 0 || holdOver)) {
+            aprilTag.setDecimation(wanted);
+            decimation = wanted;
+            lastDecimationChangeNanos = clock.nanoTime();
+        }
+    }
+
+    private void updateExposure(double turnRate) {
+        if (!controlsReady) {
+            // Camera controls only work once the camera is streaming
+            if (portal.getCameraState() != VisionPortal.CameraState.STREAMING) return;
+            ExposureControl exposureControl = portal.getCameraControl(ExposureControl.class);
+            GainControl gainControl = portal.getCameraControl(GainControl.class);
+            minExposureMs = (int) exposureControl.getMinExposure(TimeUnit.MILLISECONDS) + 1;
+            maxExposureMs = (int) exposureControl.getMaxExposure(TimeUnit.MILLISECONDS);
+            minGain = gainControl.getMinGain();
+            maxGain = gainControl.getMaxGain();
+            if (exposureControl.getMode() != ExposureControl.Mode.Manual) {
+                exposureControl.setMode(ExposureControl.Mode.Manual);
+            }
+            controlsReady = true;
+        }
+
+        if (fastTurnMode && turnRate < SLOW_TURN_DPS) fastTurnMode = false;
+        else if (!fastTurnMode && turnRate > FAST_TURN_DPS) fastTurnMode = true;
+
+        int wantedExposure = Range.clip(fastTurnMode ? FAST_TURN_EXPOSURE_MS : NORMAL_EXPOSURE_MS, minExposureMs, maxExposureMs);
+        // Same image brightness: gain up by the factor exposure went down
+        int wantedGain = Range.clip((int) Math.round(NORMAL_GAIN * (double) NORMAL_EXPOSURE_MS / wantedExposure), minGain, maxGain);
+
+        if (wantedExposure != exposureMs) {
+            portal.getCameraControl(ExposureControl.class).setExposure(wantedExposure, TimeUnit.MILLISECONDS);
+            exposureMs = wantedExposure;
+        }
+        if (wantedGain != gain) {
+            portal.getCameraControl(GainControl.class).setGain(wantedGain);
+            gain = wantedGain;
+        }
+    }
+
+    public int getDecimation() { return decimation; }
+    public int getExposureMs() { return exposureMs; }
+    public int getGain() { return gain; }
+    public boolean isFastTurnMode() { return fastTurnMode; }
+}
@@ -0,0 +1,77 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+import com.qualcomm.robotcore.util.Range;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scales motor powers so they mean the same thing at any battery voltage: a power of 0.28 gives
+ * the speed it gives on a NOMINAL_VOLTS battery whether the battery is fresh or nearly flat, so
+ * minimum powers still break stiction and timed moves still go the same distance.
+ *
+ * Reading the voltage is a bus transaction, so update() only samples a few times a second; the
+ * readings are low-pass filtered (drive current makes the voltage sag and bounce) and
+ * compensate() just multiplies by the cached scale.
+ */
+public class VoltageCompensator {
+    private static final double NOMINAL_VOLTS = 12.5;
+    private static final double SAMPLE_INTERVAL_SEC = 0.25;
+    private static final double FILTER_TIME_CONSTANT_SEC = 1.0;
+    private static final double MIN_VALID_VOLTS = 6.0;      // below this the reading is bad (or the hub is browning out)
+    private static final double MIN_SCALE = 0.8, MAX_SCALE = 1.3;
+
+    private final List<VoltageSensor> sensors = new ArrayList<>();
+    private final RobotClock clock;
+    private long lastSampleNanos = 0L;
+    private double filteredVolts = Double.NaN;
+    private double scale = 1.0;
+
+    public VoltageCompensator(HardwareMap hardwareMap, RobotClock clock) {
+        this.clock = clock;
+        for (VoltageSensor sensor : hardwareMap.voltageSensor) sensors.add(sensor);
+    }
+
+    public VoltageCompensator(HardwareMap hardwareMap) {
+        this(hardwareMap, RobotClock.SYSTEM);
+    }
+
+    // Call every loop; reads the battery only when a sample is due
+    public void update() {
+        long now = clock.nanoTime();
+        if (lastSampleNanos != 0L && (now - lastSampleNanos) / 1.0e9 < SAMPLE_INTERVAL_SEC) return;
+        double dt = (lastSampleNanos == 0L) ? 0.0 : (now - lastSampleNanos) / 1.0e9;
+        lastSampleNanos = now;
+
+        double volts = readVolts();
+        if (volts < MIN_VALID_VOLTS) return; // keep the last good scale
+        if (Double.isNaN(filteredVolts)) {
+            filteredVolts = volts;
+        } else {
+            filteredVolts += (volts - filteredVolts) * (1.0 - Math.exp(-dt / FILTER_TIME_CONSTANT_SEC));
+        }
+        scale = Range.clip(NOMINAL_VOLTS / filteredVolts, MIN_SCALE, MAX_SCALE);
+    }
+
+    // Lowest reading of all the hubs - that's what the motors on the weakest hub see
+    private double readVolts() {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (VoltageSensor sensor : sensors) {
+            double v = sensor.getVoltage();
+            if (v > 0) lowest = Math.min(lowest, v);
+        }
+        return Double.isInfinite(lowest) ? 0.0 : lowest;
+    }
+
+    // The power to send for the given power at nominal voltage
+    public double compensate(double power) {
+        return Range.clip(power * scale, -1.0, 1.0);
+    }
+
+    public double getScale() { return scale; }
+
+    // Filtered battery voltage, or NaN before the first good reading
+    public double getVoltage() { return filteredVolts; }
+}
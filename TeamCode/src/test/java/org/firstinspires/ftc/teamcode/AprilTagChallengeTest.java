@@ -0,0 +1,123 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AprilTagChallenge's state machine on fake hardware and a VirtualClock: a 20 second timeout
+ * takes a thousand loops, not 20 seconds. Uses the built-in routines (no routines.txt here).
+ */
+public class AprilTagChallengeTest {
+    private static final long LOOP_MS = 20;           // runOpMode's sleep per loop
+    private static final double CENTER_21_M = 36 / 39.3701;   // routine 21 centers at 36 in
+
+    private VirtualClock clock;
+    private FakeHardware hardware;
+    private FakeTelemetry telemetry;
+    private AprilTagChallenge challenge;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        hardware = new FakeHardware(clock);
+        telemetry = new FakeTelemetry();
+        challenge = new AprilTagChallenge();
+        challenge.hardwareMap = hardware.hardwareMap;
+        challenge.telemetry = telemetry;
+        challenge.gamepad1 = new Gamepad();
+        challenge.setClock(clock);
+        assertTrue(challenge.initChallenge());
+        challenge.reportInit();
+        challenge.startChallenge();
+    }
+
+    @After
+    public void tearDown() {
+        challenge.stopChallenge();
+    }
+
+    private void run(double seconds) {
+        for (long ms = 0; ms < seconds * 1000; ms += LOOP_MS) {
+            challenge.step();
+            clock.advance(LOOP_MS);
+        }
+    }
+
+    private void assertStopped() {
+        for (int i = 0; i < 4; i++) assertEquals(0.0, hardware.wheel(i).getPower(), 1e-9);
+    }
+
+    @Test
+    public void waitsForATag() {
+        run(1.0);
+        assertEquals(AprilTagChallenge.ChallengeState.WAIT_FOR_TAG, challenge.getState());
+        assertStopped();
+    }
+
+    @Test
+    public void ignoresTagsWithoutARoutine() {
+        hardware.limelight.showTag(5, 0.0, 1.0);
+        run(1.0);
+        assertEquals(AprilTagChallenge.ChallengeState.WAIT_FOR_TAG, challenge.getState());
+    }
+
+    @Test
+    public void routineTagStartsItsRoutineAndCentersOnIt() {
+        hardware.limelight.showTag(21, 10.0, 2.0);   // right of center, farther than 36 in
+        run(0.1);
+        assertEquals(AprilTagChallenge.ChallengeState.RUN_ROUTINE, challenge.getState());
+        assertEquals(21, challenge.getCurrentTagId());
+        // Drives toward it and turns right (clockwise): left side faster than the right
+        double left = hardware.frontLeft.getPower() + hardware.backLeft.getPower();
+        double right = hardware.frontRight.getPower() + hardware.backRight.getPower();
+        assertTrue("forward", left + right > 0);
+        assertTrue("turn right", left > right);
+        // frontLeft is REVERSE: the SDK (and the fake) flip the power on its way to the motor
+        assertTrue(hardware.frontLeft.getShaftPower() < 0);
+    }
+
+    @Test
+    public void stepsThroughTheRoutineOnTime() {
+        hardware.limelight.showTag(21, 0.0, CENTER_21_M);   // already centered: step 1 is done at once
+        run(0.2);
+        assertEquals("2/9: wait 2.0", telemetry.get("Step"));
+        run(1.5);
+        assertEquals("2/9: wait 2.0", telemetry.get("Step"));
+        run(0.6);
+        assertEquals("3/9: spin 360.0", telemetry.get("Step"));
+    }
+
+    @Test
+    public void tagLostForTwentySecondsGoesToLost() {
+        hardware.limelight.showTag(21, 5.0, 2.0);
+        run(0.2);
+        assertEquals(AprilTagChallenge.ChallengeState.RUN_ROUTINE, challenge.getState());
+
+        hardware.limelight.hideAll();
+        run(19.5);
+        assertEquals(AprilTagChallenge.ChallengeState.RUN_ROUTINE, challenge.getState());
+        assertStopped();   // nothing to center on, no IMU to search with
+        run(1.0);
+        assertEquals(AprilTagChallenge.ChallengeState.LOST, challenge.getState());
+        assertStopped();
+    }
+
+    @Test
+    public void lostStartsOverWhenATagComesBack() {
+        hardware.limelight.showTag(21, 5.0, 2.0);
+        run(0.2);
+        hardware.limelight.hideAll();
+        run(21.0);
+        assertEquals(AprilTagChallenge.ChallengeState.LOST, challenge.getState());
+
+        hardware.limelight.showTag(22, 0.0, 2.0);
+        run(0.1);
+        assertEquals(AprilTagChallenge.ChallengeState.RUN_ROUTINE, challenge.getState());
+        assertEquals(22, challenge.getCurrentTagId());
+    }
+}
@@ -0,0 +1,203 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.PIDCoefficients;
+import com.qualcomm.robotcore.hardware.PIDFCoefficients;
+import com.qualcomm.robotcore.hardware.configuration.typecontainers.MotorConfigurationType;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+/**
+ * In-memory DcMotorEx. The test moves the shaft (setShaftTicks / setShaftVelocity, counted the
+ * way the motor itself turns) and reads back what the code commanded. Like the SDK, a REVERSE
+ * direction negates the power and velocity going out and the position and velocity coming back.
+ */
+public class FakeDcMotor implements DcMotorEx {
+    private static final double TICKS_PER_REV = 537.7;   // goBILDA 312 rpm
+
+    private final String name;
+    private Direction direction = Direction.FORWARD;
+    private RunMode mode = RunMode.RUN_WITHOUT_ENCODER;
+    private ZeroPowerBehavior zeroPowerBehavior = ZeroPowerBehavior.FLOAT;
+    private MotorConfigurationType motorType = null;
+    private PIDFCoefficients velocityPidf = new PIDFCoefficients(10, 3, 0, 0);
+    private PIDFCoefficients positionPidf = new PIDFCoefficients(10, 0, 0, 0);
+    private boolean enabled = true;
+    private int targetPosition = 0, targetTolerance = 10;
+    private double currentAlertAmps = 5.0;
+
+    // The motor's own sense (direction already applied)
+    private double shaftPower = 0;
+    private double shaftVelocityCommand = 0;
+    private int shaftTicks = 0;
+    private double shaftTicksPerSec = 0;
+    private double amps = 0;
+
+    public FakeDcMotor(String name) {
+        this.name = name;
+    }
+
+    // --- Test side ---
+
+    public void setShaftTicks(int ticks) { shaftTicks = ticks; }
+    public void setShaftVelocity(double ticksPerSec) { shaftTicksPerSec = ticksPerSec; }
+    public void setCurrentAmps(double current) { amps = current; }
+    // Power reaching the motor, positive = the motor's own forward
+    public double getShaftPower() { return shaftPower; }
+    // Last setVelocity(), ticks/s in the motor's own sense
+    public double getShaftVelocityCommand() { return shaftVelocityCommand; }
+
+    private int sign() {
+        return direction == Direction.REVERSE ? -1 : 1;
+    }
+
+    // --- DcMotorSimple ---
+
+    @Override public void setDirection(Direction direction) { this.direction = direction; }
+    @Override public Direction getDirection() { return direction; }
+
+    @Override
+    public void setPower(double power) {
+        shaftPower = sign() * power;
+    }
+
+    @Override
+    public double getPower() {
+        return sign() * shaftPower;
+    }
+
+    // --- DcMotor ---
+
+    @Override public MotorConfigurationType getMotorType() { return motorType; }
+    @Override public void setMotorType(MotorConfigurationType motorType) { this.motorType = motorType; }
+    @Override public DcMotorController getController() { return null; }
+    @Override public int getPortNumber() { return 0; }
+    @Override public void setZeroPowerBehavior(ZeroPowerBehavior behavior) { zeroPowerBehavior = behavior; }
+    @Override public ZeroPowerBehavior getZeroPowerBehavior() { return zeroPowerBehavior; }
+
+    @Override
+    @Deprecated
+    public void setPowerFloat() {
+        zeroPowerBehavior = ZeroPowerBehavior.FLOAT;
+        shaftPower = 0;
+    }
+
+    @Override
+    public boolean getPowerFloat() {
+        return zeroPowerBehavior == ZeroPowerBehavior.FLOAT && shaftPower == 0;
+    }
+
+    @Override public void setTargetPosition(int position) { targetPosition = position; }
+    @Override public int getTargetPosition() { return targetPosition; }
+
+    @Override
+    public boolean isBusy() {
+        return mode == RunMode.RUN_TO_POSITION && Math.abs(getCurrentPosition() - targetPosition) > targetTolerance;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return sign() * shaftTicks;
+    }
+
+    @Override
+    public void setMode(RunMode mode) {
+        if (mode == RunMode.STOP_AND_RESET_ENCODER) shaftTicks = 0;
+        this.mode = mode;
+    }
+
+    @Override public RunMode getMode() { return mode; }
+
+    // --- DcMotorEx ---
+
+    @Override public void setMotorEnable() { enabled = true; }
+    @Override public void setMotorDisable() { enabled = false; }
+    @Override public boolean isMotorEnabled() { return enabled; }
+
+    @Override
+    public void setVelocity(double angularRate) {
+        shaftVelocityCommand = sign() * angularRate;
+    }
+
+    @Override
+    public void setVelocity(double angularRate, AngleUnit unit) {
+        setVelocity(unit.toDegrees(angularRate) / 360.0 * TICKS_PER_REV);
+    }
+
+    @Override
+    public double getVelocity() {
+        return sign() * shaftTicksPerSec;
+    }
+
+    @Override
+    public double getVelocity(AngleUnit unit) {
+        return unit.fromDegrees(getVelocity() / TICKS_PER_REV * 360.0);
+    }
+
+    @Override
+    @Deprecated
+    public void setPIDCoefficients(RunMode mode, PIDCoefficients pid) {
+        setPIDFCoefficients(mode, new PIDFCoefficients(pid.p, pid.i, pid.d, 0));
+    }
+
+    @Override
+    public void setPIDFCoefficients(RunMode mode, PIDFCoefficients pidf) {
+        if (mode == RunMode.RUN_TO_POSITION) positionPidf = pidf;
+        else velocityPidf = pidf;
+    }
+
+    @Override
+    public void setVelocityPIDFCoefficients(double p, double i, double d, double f) {
+        velocityPidf = new PIDFCoefficients(p, i, d, f);
+    }
+
+    @Override
+    public void setPositionPIDFCoefficients(double p) {
+        positionPidf = new PIDFCoefficients(p, 0, 0, 0);
+    }
+
+    @Override
+    @Deprecated
+    public PIDCoefficients getPIDCoefficients(RunMode mode) {
+        PIDFCoefficients pidf = getPIDFCoefficients(mode);
+        return new PIDCoefficients(pidf.p, pidf.i, pidf.d);
+    }
+
+    @Override
+    public PIDFCoefficients getPIDFCoefficients(RunMode mode) {
+        return mode == RunMode.RUN_TO_POSITION ? positionPidf : velocityPidf;
+    }
+
+    @Override public void setTargetPositionTolerance(int tolerance) { targetTolerance = tolerance; }
+    @Override public int getTargetPositionTolerance() { return targetTolerance; }
+
+    @Override
+    public double getCurrent(CurrentUnit unit) {
+        return unit == CurrentUnit.MILLIAMPS ? amps * 1000.0 : amps;
+    }
+
+    @Override
+    public double getCurrentAlert(CurrentUnit unit) {
+        return unit == CurrentUnit.MILLIAMPS ? currentAlertAmps * 1000.0 : currentAlertAmps;
+    }
+
+    @Override
+    public void setCurrentAlert(double current, CurrentUnit unit) {
+        currentAlertAmps = unit == CurrentUnit.MILLIAMPS ? current / 1000.0 : current;
+    }
+
+    @Override
+    public boolean isOverCurrent() {
+        return amps > currentAlertAmps;
+    }
+
+    // --- HardwareDevice ---
+
+    @Override public Manufacturer getManufacturer() { return Manufacturer.Other; }
+    @Override public String getDeviceName() { return "Fake motor " + name; }
+    @Override public String getConnectionInfo() { return "fake"; }
+    @Override public int getVersion() { return 1; }
+    @Override public void resetDeviceConfigurationForOpMode() { }
+    @Override public void close() { }
+}
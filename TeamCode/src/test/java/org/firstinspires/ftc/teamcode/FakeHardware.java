@@ -0,0 +1,41 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+/**
+ * A HardwareMap holding fakes under the names the OpModes look for: the four drive motors and
+ * the Limelight always, the IMU only after withImu() (it is optional on the robot too).
+ */
+public class FakeHardware {
+    public final HardwareMap hardwareMap = new HardwareMap(null, null);
+    public final FakeDcMotor frontLeft = new FakeDcMotor("frontLeft");
+    public final FakeDcMotor frontRight = new FakeDcMotor("frontRight");
+    public final FakeDcMotor backLeft = new FakeDcMotor("backLeft");
+    public final FakeDcMotor backRight = new FakeDcMotor("backRight");
+    public final FakeIMU imu = new FakeIMU();
+    public final FakeLimelight limelight;
+
+    public FakeHardware(RobotClock clock) {
+        limelight = new FakeLimelight(clock);
+        hardwareMap.put("frontLeft", frontLeft);
+        hardwareMap.put("frontRight", frontRight);
+        hardwareMap.put("backLeft", backLeft);
+        hardwareMap.put("backRight", backRight);
+        hardwareMap.put("limelight", limelight.getDevice());
+    }
+
+    public FakeHardware withImu() {
+        hardwareMap.put("imu", imu);
+        return this;
+    }
+
+    // Wheels in DriveHealth order: FL, FR, BL, BR
+    public FakeDcMotor wheel(int index) {
+        switch (index) {
+            case DriveHealth.FRONT_LEFT: return frontLeft;
+            case DriveHealth.FRONT_RIGHT: return frontRight;
+            case DriveHealth.BACK_LEFT: return backLeft;
+            default: return backRight;
+        }
+    }
+}
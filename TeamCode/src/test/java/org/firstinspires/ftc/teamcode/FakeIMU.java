@@ -0,0 +1,73 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.IMU;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+/**
+ * In-memory IMU, yaw only (the robot stays flat). The test sets the heading and turn rate; the
+ * yaw reads back relative to the last resetYaw() and wrapped to +/-180, as the real one does.
+ * getRobotOrientation() fills in yaw as the first angle whatever the axes order.
+ */
+public class FakeIMU implements IMU {
+    private double headingDeg = 0;   // unwrapped, CCW positive
+    private double zeroDeg = 0;      // heading at the last resetYaw()
+    private double rateDps = 0;
+
+    // --- Test side ---
+
+    public synchronized void setHeading(double degrees) { headingDeg = degrees; }
+    public synchronized void turn(double degrees) { headingDeg += degrees; }
+    public synchronized void setRate(double degreesPerSec) { rateDps = degreesPerSec; }
+
+    private synchronized double yawDeg() {
+        return AngleUnit.normalizeDegrees(headingDeg - zeroDeg);
+    }
+
+    // --- IMU ---
+
+    @Override
+    public boolean initialize(Parameters parameters) {
+        return true;
+    }
+
+    @Override
+    public synchronized void resetYaw() {
+        zeroDeg = headingDeg;
+    }
+
+    @Override
+    public YawPitchRollAngles getRobotYawPitchRollAngles() {
+        return new YawPitchRollAngles(AngleUnit.DEGREES, yawDeg(), 0, 0, System.nanoTime());
+    }
+
+    @Override
+    public Orientation getRobotOrientation(AxesReference reference, AxesOrder order, AngleUnit angleUnit) {
+        return new Orientation(reference, order, angleUnit, (float) angleUnit.fromDegrees(yawDeg()), 0f, 0f, System.nanoTime());
+    }
+
+    @Override
+    public Quaternion getRobotOrientationAsQuaternion() {
+        double half = Math.toRadians(yawDeg()) / 2.0;
+        return new Quaternion((float) Math.cos(half), 0f, 0f, (float) Math.sin(half), System.nanoTime());
+    }
+
+    @Override
+    public synchronized AngularVelocity getRobotAngularVelocity(AngleUnit angleUnit) {
+        return new AngularVelocity(angleUnit, 0f, 0f, (float) angleUnit.fromDegrees(rateDps), System.nanoTime());
+    }
+
+    // --- HardwareDevice ---
+
+    @Override public Manufacturer getManufacturer() { return Manufacturer.Other; }
+    @Override public String getDeviceName() { return "Fake IMU"; }
+    @Override public String getConnectionInfo() { return "fake"; }
+    @Override public int getVersion() { return 1; }
+    @Override public void resetDeviceConfigurationForOpMode() { }
+    @Override public void close() { }
+}
@@ -0,0 +1,231 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.limelightvision.LLResult;
+import com.qualcomm.hardware.limelightvision.LLResultTypes;
+import com.qualcomm.hardware.limelightvision.LLStatus;
+import com.qualcomm.hardware.limelightvision.Limelight3A;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * In-memory Limelight 3A. The test says what is in view (showTag, setMegaTagPose); once started,
+ * the camera turns that into a new LLResult every frame period of the given clock, with
+ * staleness growing between frames as on the real one.
+ *
+ * Limelight3A, LLResult, LLStatus and FiducialResult are concrete SDK classes built from the
+ * camera's JSON, with no constructors meant for us, so the objects handed out are Mockito mocks
+ * answering from the state here. Code under test sees the plain SDK API.
+ */
+public class FakeLimelight {
+    private static final class Tag {
+        int id;
+        double txDeg, tyDeg, areaPercent;
+        double x, y, z, yawDeg;   // robot pose in tag space, meters
+    }
+
+    private final RobotClock clock;
+    private final Limelight3A device = mock(Limelight3A.class);
+
+    // Scene, guarded by this
+    private final List<Tag> inView = new ArrayList<>();
+    private Pose3D megaTagPose = null;
+    private double captureLatencyMs = 20.0, targetingLatencyMs = 5.0;
+    private double fps = 50.0, tempC = 45.0, cpuPercent = 40.0;
+    private boolean connected = true, running = false, frozen = false;
+    private int pipeline = 0, pollHz = 100;
+    private double robotYawDeg = Double.NaN;
+
+    // Current frame
+    private LLResult frame = null;
+    private long frameArrivalNanos = 0L;
+
+    public FakeLimelight(RobotClock clock) {
+        this.clock = clock;
+        when(device.getLatestResult()).thenAnswer(i -> latest());
+        when(device.isConnected()).thenAnswer(i -> isConnected());
+        when(device.getTimeSinceLastUpdate()).thenAnswer(number(this::stalenessMs));
+        when(device.getStatus()).thenAnswer(i -> status());
+        when(device.getDeviceName()).thenReturn("Fake Limelight");
+        doAnswer(i -> setRunning(i, true)).when(device).start();
+        doAnswer(i -> setRunning(i, false)).when(device).stop();
+        doAnswer(i -> {
+            synchronized (this) { pollHz = ((Number) i.getArgument(0)).intValue(); }
+            return done(i);
+        }).when(device).setPollRateHz(anyInt());
+        doAnswer(i -> {
+            synchronized (this) { pipeline = ((Number) i.getArgument(0)).intValue(); }
+            return done(i);
+        }).when(device).pipelineSwitch(anyInt());
+        doAnswer(i -> {
+            synchronized (this) { robotYawDeg = ((Number) i.getArgument(0)).doubleValue(); }
+            return done(i);
+        }).when(device).updateRobotOrientation(anyDouble());
+    }
+
+    // What goes in the HardwareMap
+    public Limelight3A getDevice() {
+        return device;
+    }
+
+    // --- Test side ---
+
+    /**
+     * A tag straight ahead of the robot at this range, seen tx degrees off center.
+     * Tag area (so confidence) falls off with range like the real one: 1% at 1 m.
+     */
+    public void showTag(int id, double txDeg, double rangeM) {
+        showTag(id, txDeg, 0.0, 1.0 / (rangeM * rangeM), 0.0, 0.0, rangeM, 0.0);
+    }
+
+    /**
+     * A tag with everything given.
+     * @param x robot pose in tag space (meters, degrees), as getRobotPoseTargetSpace() reports it
+     */
+    public synchronized void showTag(int id, double txDeg, double tyDeg, double areaPercent,
+                                     double x, double y, double z, double yawDeg) {
+        hideTag(id);
+        Tag t = new Tag();
+        t.id = id;
+        t.txDeg = txDeg;
+        t.tyDeg = tyDeg;
+        t.areaPercent = areaPercent;
+        t.x = x;
+        t.y = y;
+        t.z = z;
+        t.yawDeg = yawDeg;
+        inView.add(t);
+        frame = null; // shows up in the next result
+    }
+
+    public synchronized void hideTag(int id) {
+        inView.removeIf(t -> t.id == id);
+        frame = null;
+    }
+
+    public synchronized void hideAll() {
+        inView.clear();
+        frame = null;
+    }
+
+    // MegaTag2 botpose, Limelight field space (meters from the field center, degrees)
+    public synchronized void setMegaTagPose(double xM, double yM, double yawDeg) {
+        megaTagPose = new Pose3D(new Position(DistanceUnit.METER, xM, yM, 0, 0),
+                new YawPitchRollAngles(AngleUnit.DEGREES, yawDeg, 0, 0, 0));
+        frame = null;
+    }
+
+    public synchronized void setLatency(double captureMs, double targetingMs) {
+        captureLatencyMs = captureMs;
+        targetingLatencyMs = targetingMs;
+    }
+
+    public synchronized void setFps(double framesPerSec) { fps = framesPerSec; }
+    public synchronized void setConnected(boolean isConnected) { connected = isConnected; }
+    // Keep handing out the last result without new frames (a hung pipeline)
+    public synchronized void setFrozen(boolean isFrozen) { frozen = isFrozen; }
+
+    public synchronized boolean isRunning() { return running; }
+    public synchronized int getPollHz() { return pollHz; }
+    public synchronized int getPipeline() { return pipeline; }
+    // Last yaw sent with updateRobotOrientation(), NaN if none
+    public synchronized double getRobotYaw() { return robotYawDeg; }
+
+    // --- Camera side ---
+
+    private synchronized boolean isConnected() {
+        return connected;
+    }
+
+    private synchronized Object setRunning(InvocationOnMock i, boolean run) {
+        running = run;
+        return done(i);
+    }
+
+    private synchronized LLResult latest() {
+        if (!connected || !running) return null;
+        long now = clock.nanoTime();
+        long periodNanos = (long) (1.0e9 / fps);
+        if (frame == null || (!frozen && now - frameArrivalNanos >= periodNanos)) {
+            frame = newResult(now);
+            frameArrivalNanos = now;
+        }
+        return frame;
+    }
+
+    private synchronized double stalenessMs() {
+        return frame == null ? 0.0 : (clock.nanoTime() - frameArrivalNanos) / 1.0e6;
+    }
+
+    private LLResult newResult(long arrivalNanos) {
+        List<LLResultTypes.FiducialResult> fiducials = new ArrayList<>();
+        for (Tag t : inView) fiducials.add(fiducial(t));
+        double capture = captureLatencyMs, targeting = targetingLatencyMs;
+        LLResult r = mock(LLResult.class);
+        when(r.isValid()).thenReturn(!fiducials.isEmpty());
+        when(r.getFiducialResults()).thenReturn(fiducials);
+        when(r.getStaleness()).thenAnswer(number(() -> (clock.nanoTime() - arrivalNanos) / 1.0e6));
+        when(r.getCaptureLatency()).thenAnswer(number(() -> capture));
+        when(r.getTargetingLatency()).thenAnswer(number(() -> targeting));
+        when(r.getPipelineIndex()).thenAnswer(number(() -> pipeline));
+        boolean haveBotpose = megaTagPose != null && !fiducials.isEmpty();
+        when(r.getBotpose_MT2()).thenReturn(haveBotpose ? megaTagPose : null);
+        int tagCount = haveBotpose ? fiducials.size() : 0;
+        when(r.getBotposeTagCount()).thenAnswer(number(() -> tagCount));
+        double avgDist = inView.isEmpty() ? 0.0 : inView.get(0).z;
+        when(r.getBotposeAvgDist()).thenAnswer(number(() -> avgDist));
+        return r;
+    }
+
+    private static LLResultTypes.FiducialResult fiducial(Tag t) {
+        LLResultTypes.FiducialResult f = mock(LLResultTypes.FiducialResult.class);
+        when(f.getFiducialId()).thenAnswer(number(() -> t.id));
+        when(f.getTargetXDegrees()).thenAnswer(number(() -> t.txDeg));
+        when(f.getTargetYDegrees()).thenAnswer(number(() -> t.tyDeg));
+        when(f.getTargetArea()).thenAnswer(number(() -> t.areaPercent));
+        when(f.getRobotPoseTargetSpace()).thenReturn(new Pose3D(new Position(DistanceUnit.METER, t.x, t.y, t.z, 0),
+                new YawPitchRollAngles(AngleUnit.DEGREES, t.yawDeg, 0, 0, 0)));
+        return f;
+    }
+
+    private synchronized LLStatus status() {
+        LLStatus s = mock(LLStatus.class);
+        double f = fps, c = cpuPercent, temp = tempC, p = pipeline;
+        when(s.getFps()).thenAnswer(number(() -> f));
+        when(s.getCpu()).thenAnswer(number(() -> c));
+        when(s.getTemp()).thenAnswer(number(() -> temp));
+        when(s.getPipelineIndex()).thenAnswer(number(() -> p));
+        return s;
+    }
+
+    // Numeric getters are int, long or double depending on the getter (and SDK version): answer in whichever it is
+    private static Answer<Object> number(DoubleSupplier value) {
+        return i -> {
+            Class<?> type = i.getMethod().getReturnType();
+            double v = value.getAsDouble();
+            if (type == long.class) return (long) v;
+            if (type == int.class) return (int) Math.round(v);
+            if (type == float.class) return (float) v;
+            return v;
+        };
+    }
+
+    // Return value for a setter that may be void or boolean
+    private static Object done(InvocationOnMock i) {
+        return i.getMethod().getReturnType() == boolean.class ? Boolean.TRUE : null;
+    }
+}
@@ -0,0 +1,99 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.Func;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Telemetry that keeps what it was given instead of sending it: the latest value under each
+ * caption (kept across update() and clear(), so a test can look after the loop), and every line.
+ */
+public class FakeTelemetry implements Telemetry {
+    private final Map<String, String> latest = new HashMap<>();
+    private final List<String> lines = new ArrayList<>();
+    private int updates = 0;
+    private boolean autoClear = true;
+    private int transmissionMs = 250;
+    private String itemSeparator = " | ", captionSeparator = " : ";
+
+    // --- Test side ---
+
+    // Latest value shown under this caption, or null if there never was one
+    public synchronized String get(String caption) {
+        return latest.get(caption);
+    }
+
+    public synchronized boolean hasLine(String line) {
+        return lines.contains(line);
+    }
+
+    public synchronized int getUpdates() {
+        return updates;
+    }
+
+    // --- Telemetry ---
+
+    @Override
+    public synchronized Item addData(String caption, String format, Object... args) {
+        latest.put(caption, String.format(Locale.US, format, args));
+        return null;
+    }
+
+    @Override
+    public synchronized Item addData(String caption, Object value) {
+        latest.put(caption, String.valueOf(value));
+        return null;
+    }
+
+    @Override
+    public <T> Item addData(String caption, Func<T> valueProducer) {
+        return addData(caption, valueProducer.value());
+    }
+
+    @Override
+    public <T> Item addData(String caption, String format, Func<T> valueProducer) {
+        return addData(caption, format, valueProducer.value());
+    }
+
+    @Override public boolean removeItem(Item item) { return false; }
+    @Override public void clear() { }
+    @Override public void clearAll() { }
+    @Override public Object addAction(Runnable action) { return action; }
+    @Override public boolean removeAction(Object token) { return false; }
+    @Override public void speak(String text) { }
+    @Override public void speak(String text, String languageCode, String countryCode) { }
+
+    @Override
+    public synchronized boolean update() {
+        updates++;
+        return true;
+    }
+
+    @Override
+    public Line addLine() {
+        return null;
+    }
+
+    @Override
+    public synchronized Line addLine(String lineCaption) {
+        lines.add(lineCaption);
+        return null;
+    }
+
+    @Override public boolean removeLine(Line line) { return false; }
+    @Override public boolean isAutoClear() { return autoClear; }
+    @Override public void setAutoClear(boolean autoClear) { this.autoClear = autoClear; }
+    @Override public int getMsTransmissionInterval() { return transmissionMs; }
+    @Override public void setMsTransmissionInterval(int msTransmissionInterval) { transmissionMs = msTransmissionInterval; }
+    @Override public String getItemSeparator() { return itemSeparator; }
+    @Override public void setItemSeparator(String itemSeparator) { this.itemSeparator = itemSeparator; }
+    @Override public String getCaptionValueSeparator() { return captionSeparator; }
+    @Override public void setCaptionValueSeparator(String captionValueSeparator) { captionSeparator = captionValueSeparator; }
+    @Override public void setDisplayFormat(DisplayFormat displayFormat) { }
+    @Override public Log log() { return null; }
+}
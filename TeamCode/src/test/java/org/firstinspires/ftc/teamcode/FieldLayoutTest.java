@@ -0,0 +1,29 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FieldLayoutTest {
+    @Test
+    public void limelightPosesComeBackInFieldInches() {
+        Odometry.Pose p = new Odometry.Pose();
+        FieldLayout.fromLimelight(0.0, 0.0, 0.0, p);
+        assertEquals(FieldLayout.FIELD_SIZE_IN / 2.0, p.x, 1e-9);
+        assertEquals(FieldLayout.FIELD_SIZE_IN / 2.0, p.y, 1e-9);
+
+        // However the maps are turned, distances from the center are kept
+        FieldLayout.fromLimelight(1.0, -0.5, 30.0, p);
+        assertEquals(Math.hypot(39.3701, 19.68505), Math.hypot(p.x - 72.0, p.y - 72.0), 1e-6);
+    }
+
+    @Test
+    public void headingsRoundTrip() {
+        Odometry.Pose p = new Odometry.Pose();
+        for (double heading = -540.0; heading <= 540.0; heading += 45.0) {
+            FieldLayout.fromLimelight(0.0, 0.0, FieldLayout.toLimelightYaw(heading), p);
+            assertEquals(0.0, AngleUnit.normalizeDegrees(heading - p.heading), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GridPlannerTest {
+    private GridPlanner planner;
+
+    @Before
+    public void setUp() {
+        planner = new GridPlanner();
+        planner.clearObstacles();
+    }
+
+    // Every segment of the path stays out of the blocked cells
+    private void assertPathClear() {
+        for (int i = 1; i < planner.getPathLength(); i++) {
+            double x0 = planner.getPathX(i - 1), y0 = planner.getPathY(i - 1);
+            double x1 = planner.getPathX(i), y1 = planner.getPathY(i);
+            for (double t = 0; t <= 1.0; t += 0.01) {
+                double x = x0 + t * (x1 - x0), y = y0 + t * (y1 - y0);
+                assertFalse("segment " + i + " crosses (" + x + ", " + y + ")", planner.isBlocked(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void openFieldIsOneStraightLine() {
+        planner.rebuild();
+        assertTrue(planner.plan(24, 24, 120, 100));
+        assertEquals(2, planner.getPathLength());
+        assertEquals(Math.hypot(96, 76), planner.getPathInches(), 1e-9);
+    }
+
+    @Test
+    public void goesAroundAWall() {
+        planner.addObstacle(70, 0, 74, 110);   // wall up the middle, open at the top
+        planner.rebuild();
+        assertTrue(planner.plan(30, 30, 114, 30));
+        assertTrue(planner.getPathLength() > 2);
+        assertEquals(30.0, planner.getPathX(0), 1e-9);
+        assertEquals(114.0, planner.getPathX(planner.getPathLength() - 1), 1e-9);
+        assertPathClear();
+    }
+
+    @Test
+    public void noPathThroughAClosedWall() {
+        planner.addObstacle(70, 0, 74, 144);
+        planner.rebuild();
+        assertFalse(planner.plan(30, 30, 114, 30));
+        assertEquals(0, planner.getPathLength());
+    }
+}
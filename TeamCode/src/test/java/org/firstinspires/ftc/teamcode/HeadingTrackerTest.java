@@ -0,0 +1,55 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeadingTrackerTest {
+    private static final long LOOP_MS = 20;
+
+    private VirtualClock clock;
+    private FakeIMU imu;
+    private HeadingTracker tracker;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        imu = new FakeIMU();
+        imu.setHeading(100.0);
+        tracker = new HeadingTracker(imu, clock);
+        tracker.reset();
+    }
+
+    // Turn at a steady rate for a while, updating every loop
+    private void spin(double degPerSec, double seconds) {
+        imu.setRate(degPerSec);
+        for (long ms = 0; ms < seconds * 1000; ms += LOOP_MS) {
+            imu.turn(degPerSec * LOOP_MS / 1000.0);
+            clock.advance(LOOP_MS);
+            tracker.update();
+        }
+    }
+
+    @Test
+    public void resetZeroesTheHeading() {
+        tracker.update();
+        assertEquals(0.0, tracker.getHeading(), 1e-9);
+    }
+
+    @Test
+    public void keepsCountingPastOneEighty() {
+        spin(180.0, 2.5);
+        assertEquals(450.0, tracker.getHeading(), 1e-6);
+        spin(-180.0, 4.0);
+        assertEquals(-270.0, tracker.getHeading(), 1e-6);
+    }
+
+    @Test
+    public void fastSpinFollowsTheGyroRate() {
+        // 200 degrees a loop: the shortest way from one yaw to the next is -160, the gyro says +200
+        spin(10000.0, 0.2);
+        assertEquals(2000.0, tracker.getHeading(), 1e-6);
+        assertEquals(10000.0, tracker.getRate(), 1e-3);
+    }
+}
@@ -0,0 +1,64 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LoopWatchdogTest {
+    private static final double BUDGET_MS = 40.0;
+
+    private VirtualClock clock;
+    private LoopWatchdog watchdog;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        watchdog = new LoopWatchdog(BUDGET_MS, clock);
+        watchdog.tick();
+    }
+
+    // Run loops of this length for a while; fails if any of them stops the motors
+    private void runWithoutStopping(long cycleMs, double seconds) {
+        for (long ms = 0; ms < seconds * 1000; ms += cycleMs) {
+            clock.advance(cycleMs);
+            assertFalse("stopped at " + ms + " ms", watchdog.tick() == LoopWatchdog.Level.SAFE_STOP);
+        }
+    }
+
+    private void run(long cycleMs, int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            clock.advance(cycleMs);
+            watchdog.tick();
+        }
+    }
+
+    @Test
+    public void mildOverrunsShedLoadButKeepDriving() {
+        runWithoutStopping(60, 10.0);
+        assertEquals(LoopWatchdog.Level.NO_VISION_EXTRAS, watchdog.getLevel());
+    }
+
+    @Test
+    public void severeOverrunsStop() {
+        run(170, 3);
+        assertEquals(LoopWatchdog.Level.SAFE_STOP, watchdog.getLevel());
+    }
+
+    @Test
+    public void stopEndsWhenTheSevereOverrunsDo() {
+        run(170, 3);
+        run(60, 15);   // still over budget, no longer badly
+        assertEquals(LoopWatchdog.Level.SAFE_STOP, watchdog.getLevel());
+        run(60, 5);    // a second after the last severe one
+        assertEquals(LoopWatchdog.Level.NO_VISION_EXTRAS, watchdog.getLevel());
+    }
+
+    @Test
+    public void headroomStepsBackDown() {
+        run(60, 100);
+        runWithoutStopping(20, 10.0);
+        assertEquals(LoopWatchdog.Level.NORMAL, watchdog.getLevel());
+    }
+}
@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagVisionTest {
+    private VirtualClock clock;
+    private FakeHardware hardware;
+    private TagVision vision;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        hardware = new FakeHardware(clock);
+        vision = new TagVision(hardware.hardwareMap, clock);
+        vision.start();
+    }
+
+    @After
+    public void tearDown() {
+        vision.stop();
+    }
+
+    @Test
+    public void oneLimelightFrameKeepsOneTimestamp() {
+        hardware.limelight.setFps(50.0);
+        hardware.limelight.showTag(21, 2.0, 1.5);
+        assertEquals(1, vision.update());
+        long first = vision.find(21).timestampNanos;
+        for (int i = 0; i < 3; i++) {
+            clock.advanceNanos(4_300_000L);   // polled faster than the camera makes frames, off the ms grid the staleness is rounded to
+            assertEquals(1, vision.update());
+            assertEquals(first, vision.find(21).timestampNanos);
+        }
+        clock.advance(10);
+        vision.update();
+        assertNotEquals(first, vision.find(21).timestampNanos);
+    }
+
+    @Test
+    public void filterJudgesEachLimelightFrameOnce() {
+        TagFilter filter = new TagFilter();
+        hardware.limelight.showTag(21, 2.0, 1.5);
+        for (int i = 0; i < 50; i++) {
+            vision.update();
+            assertTrue(filter.accept(vision.find(21)));
+            clock.advanceNanos(5_300_000L);
+        }
+        // a new frame every fourth loop (21.2 ms): 13 frames, not 50
+        assertEquals(13, filter.getAccepted(21));
+    }
+
+    // ftcPose of the tag as seen by a camera at this tag-space pose (the forward transform)
+    private static double[] ftcPoseFrom(double xT, double zT, double yawDeg) {
+        double yaw = Math.toRadians(yawDeg);
+        return new double[]{-(xT * Math.cos(yaw) - zT * Math.sin(yaw)), xT * Math.sin(yaw) + zT * Math.cos(yaw), -yawDeg};
+    }
+
+    @Test
+    public void webcamPoseIsTheRobotInTagSpace() {
+        TagDetection d = new TagDetection();
+        // One meter to the right of the tag and one out, turned left to look straight at it
+        TagVision.setPoseFromFtcPose(d, 0.0, Math.sqrt(2.0), 0.0, -45.0);
+        assertEquals(1.0, d.x, 1e-9);
+        assertEquals(1.0, d.z, 1e-9);
+        assertEquals(45.0, d.yawDeg, 1e-9);
+
+        double[] p = ftcPoseFrom(-0.4, 1.7, -30.0);
+        TagVision.setPoseFromFtcPose(d, p[0], p[1], 0.2, p[2]);
+        assertEquals(-0.4, d.x, 1e-9);
+        assertEquals(1.7, d.z, 1e-9);
+        assertEquals(-30.0, d.yawDeg, 1e-9);
+        assertEquals(0.2, d.y, 1e-9);   // camera 0.2 m below the tag
+    }
+
+    @Test
+    public void fusedYawBlendsAcrossOneEighty() {
+        TagDetection ll = new TagDetection(), cam = new TagDetection(), out = new TagDetection();
+        ll.id = cam.id = 21;
+        ll.hasPose = cam.hasPose = true;
+        ll.confidence = cam.confidence = 1.0;
+        ll.timestampNanos = cam.timestampNanos = 1L;
+        ll.yawDeg = 179.0;
+        cam.yawDeg = -177.0;
+        TagVision.arbitrate(ll, cam, out);
+        assertEquals(TagDetection.Source.FUSED, out.source);
+        assertEquals(-179.0, out.yawDeg, 1e-9);
+    }
+
+    @Test
+    public void noMegaTagUntilTheFieldMapsAreMatched() {
+        hardware.limelight.showTag(20, 0.0, 1.0);
+        hardware.limelight.setMegaTagPose(0.5, 0.5, 90.0);
+        vision.setRobotYaw(90.0);
+        vision.update();
+        assertEquals(FieldLayout.LIMELIGHT_MAP_MATCHES, vision.getMegaTagPose(new Odometry.Pose()));
+        if (!FieldLayout.LIMELIGHT_MAP_MATCHES) assertTrue(Double.isNaN(hardware.limelight.getRobotYaw()));
+    }
+}
@@ -0,0 +1,31 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * A RobotClock that only moves when told to: sleep() and advance() jump the time forward instantly.
+ * For stepping OpMode logic (e.g. AprilTagChallenge's tag-lost timeout) off the robot.
+ */
+public class VirtualClock implements RobotClock {
+    // Starts well away from 0: several classes use a time of 0 to mean "never sampled"
+    private static final long EPOCH_NANOS = 1_000_000_000_000L;
+
+    private long nanos = EPOCH_NANOS;
+
+    @Override
+    public synchronized long nanoTime() {
+        return nanos;
+    }
+
+    @Override
+    public synchronized void sleep(long ms) {
+        advance(ms);
+    }
+
+    public synchronized void advance(long ms) {
+        advanceNanos(ms * 1_000_000L);
+    }
+
+    // For stepping off the millisecond grid
+    public synchronized void advanceNanos(long n) {
+        nanos += n;
+    }
+}
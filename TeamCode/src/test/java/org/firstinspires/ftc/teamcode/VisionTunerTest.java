@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VisionTunerTest {
+    private static final long LOOP_MS = 20;
+
+    private VirtualClock clock;
+    private VisionPortal portal;
+    private VisionTuner tuner;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        portal = mock(VisionPortal.class);   // never STREAMING, so exposure is left alone
+        tuner = new VisionTuner(portal, mock(AprilTagProcessor.class), clock);
+    }
+
+    private void run(double seconds, double rangeM) {
+        for (long ms = 0; ms < seconds * 1000; ms += LOOP_MS) {
+            tuner.update(rangeM, 0.0);
+            clock.advance(LOOP_MS);
+        }
+    }
+
+    @Test
+    public void decimationFollowsRange() {
+        run(0.1, 0.5);
+        assertEquals(3, tuner.getDecimation());
+        run(1.0, 3.0);
+        assertEquals(1, tuner.getDecimation());
+    }
+
+    @Test
+    public void lowFpsRaisesDecimationOneStepPerHold() {
+        when(portal.getFps()).thenReturn(10.0f);
+        run(0.02, 3.0);
+        assertEquals(2, tuner.getDecimation());   // 1 for the range, one step up for the fps
+        run(0.4, 3.0);
+        assertEquals(2, tuner.getDecimation());   // holding after the change
+        run(0.2, 3.0);
+        assertEquals(3, tuner.getDecimation());
+        run(0.5, 3.0);
+        assertEquals(4, tuner.getDecimation());
+    }
+}